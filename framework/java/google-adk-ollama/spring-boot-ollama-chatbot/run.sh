@@ -1 +1 @@
-mvn clean package -DskipTests=true && java -jar target/*.jar
\ No newline at end of file
+mvn clean package -DskipTests=true && java -jar target/*-exec.jar
\ No newline at end of file
@@ -0,0 +1,198 @@
+package com.example.chatbot.agent;
+
+import com.example.chatbot.config.ChatAgentProperties;
+import com.example.chatbot.service.OllamaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.adk.agents.LlmAgent;
+import com.google.adk.events.Event;
+import com.google.adk.runner.InMemoryRunner;
+import com.google.adk.tools.BaseTool;
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Built ADK agents, one per (name, model, instruction), each with the runner that executes its turns.
+ *
+ * <p>Building an agent and its runner is done once and the result reused by every request for the
+ * same combination. Each chat session gets its own ADK session on the agent's runner, so the agent
+ * sees the conversation so far; sessions idle for longer than {@code chat.agent.session-idle-timeout}
+ * are dropped. Tool calls run on virtual threads, see {@link TimedTool}.
+ */
+@Component
+public class AgentRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgentRegistry.class);
+
+    private static final String USER_ID = "chat";
+
+    private final OllamaService ollamaService;
+    private final ObjectMapper objectMapper;
+    private final ChatAgentProperties properties;
+    private final ExecutorService toolExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Scheduler toolScheduler = Schedulers.from(toolExecutor, true);
+    private final List<BaseTool> tools;
+    private final Cache<AgentKey, PooledAgent> agents;
+    private final Cache<SessionKey, AgentSession> sessions;
+
+    @Autowired
+    public AgentRegistry(OllamaService ollamaService, ObjectMapper objectMapper, ChatAgentProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.ollamaService = ollamaService;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+
+        Map<String, BaseTool> catalog = ChatTools.catalog();
+        List<BaseTool> configured = new ArrayList<>();
+        for (String name : properties.getTools()) {
+            BaseTool tool = catalog.get(name);
+            if (tool == null) {
+                throw new IllegalArgumentException("Unknown agent tool '" + name + "', available: " + catalog.keySet());
+            }
+            configured.add(new TimedTool(tool, properties.timeoutFor(name), toolScheduler, meterRegistry));
+        }
+        this.tools = List.copyOf(configured);
+
+        this.agents = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxAgents())
+                .build();
+        this.sessions = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getSessionIdleTimeout())
+                .removalListener((SessionKey key, AgentSession session, RemovalCause cause) -> {
+                    // A replaced session belonged to an evicted agent and goes away with its runner
+                    if (session != null && cause != RemovalCause.REPLACED) {
+                        forget(session);
+                    }
+                })
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        toolScheduler.shutdown();
+        toolExecutor.shutdownNow();
+    }
+
+    /**
+     * Answer one chat message with the configured agent on the given model, continuing the session's conversation
+     */
+    public Mono<String> chat(String sessionId, String model, String message) {
+        AgentKey key = new AgentKey(properties.getName(), model, properties.getInstruction());
+        return Mono.defer(() -> {
+            PooledAgent agent = agent(key);
+            Content userMessage = Content.fromParts(Part.fromText(message));
+            return session(new SessionKey(sessionId, key), agent)
+                    .flatMap(adkSessionId -> Flux.from(agent.runner().runAsync(USER_ID, adkSessionId, userMessage))
+                            .filter(Event::finalResponse)
+                            .map(event -> event.content().map(OllamaLlm::text).orElse(""))
+                            .filter(text -> !text.isBlank())
+                            .last(""));
+        });
+    }
+
+    /**
+     * Forget what the agents remember of a chat session
+     */
+    public void clearSession(String sessionId) {
+        sessions.asMap().keySet().removeIf(key -> key.sessionId().equals(sessionId));
+    }
+
+    /**
+     * The agent for this combination, built on first use
+     */
+    public LlmAgent getAgent(String name, String model, String instruction) {
+        return agent(new AgentKey(name, model, instruction)).agent();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("agents", agents.estimatedSize());
+        stats.put("sessions", sessions.estimatedSize());
+        stats.put("tools", tools.stream().map(BaseTool::name).toList());
+        return stats;
+    }
+
+    private PooledAgent agent(AgentKey key) {
+        return agents.get(key, this::build);
+    }
+
+    private PooledAgent build(AgentKey key) {
+        logger.info("Building agent {} on model {}", key.name(), key.model());
+        OllamaLlm llm = new OllamaLlm(key.model(), ollamaService, objectMapper);
+        LlmAgent agent = LlmAgent.builder()
+                .name(key.name())
+                .description("A helpful chatbot assistant")
+                .model(llm)
+                .beforeModelCallbackSync(llm::bindSession)
+                .instruction(key.instruction())
+                .tools(tools)
+                .build();
+        return new PooledAgent(agent, new InMemoryRunner(agent, key.name()));
+    }
+
+    /**
+     * The ADK session of a chat session on this agent's runner, created on first use or when the agent was rebuilt
+     */
+    private Mono<String> session(SessionKey key, PooledAgent agent) {
+        AgentSession existing = sessions.getIfPresent(key);
+        if (existing != null && existing.agent() == agent) {
+            return Mono.just(existing.id());
+        }
+        // Created outside the cache's lock, so no other session key waits on the session service;
+        // if a concurrent turn of the same chat session stored one first, that one is used instead
+        InMemoryRunner runner = agent.runner();
+        // The model reads the chat session from the state to keep the session's backend affinity
+        ConcurrentHashMap<String, Object> state = new ConcurrentHashMap<>(
+                Map.of(OllamaLlm.CHAT_SESSION_STATE, key.sessionId()));
+        return Mono.from(runner.sessionService().createSession(runner.appName(), USER_ID, state, null).toFlowable())
+                .map(created -> {
+                    AgentSession candidate = new AgentSession(agent, created.id());
+                    AgentSession stored = sessions.asMap().merge(key, candidate,
+                            (current, fresh) -> current.agent() == agent ? current : fresh);
+                    if (stored != candidate) {
+                        forget(candidate);
+                    }
+                    return stored.id();
+                });
+    }
+
+    private static void forget(AgentSession session) {
+        InMemoryRunner runner = session.agent().runner();
+        runner.sessionService()
+                .deleteSession(runner.appName(), USER_ID, session.id())
+                .onErrorComplete()
+                .subscribe();
+    }
+
+    private record AgentKey(String name, String model, String instruction) {
+    }
+
+    private record SessionKey(String sessionId, AgentKey agent) {
+    }
+
+    private record PooledAgent(LlmAgent agent, InMemoryRunner runner) {
+    }
+
+    private record AgentSession(PooledAgent agent, String id) {
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.chatbot.agent;
+
+import com.google.adk.tools.Annotations.Schema;
+import com.google.adk.tools.BaseTool;
+import com.google.adk.tools.FunctionTool;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Tools the chat agents can call, selected by name with {@code chat.agent.tools}
+ */
+public final class ChatTools {
+
+    private ChatTools() {
+    }
+
+    /**
+     * Every available tool by the name the model sees
+     */
+    static Map<String, BaseTool> catalog() {
+        return Map.of(
+                "current_time", FunctionTool.create(ChatTools.class, "currentTime"),
+                "calculate", FunctionTool.create(ChatTools.class, "calculate"));
+    }
+
+    @Schema(name = "current_time", description = "Returns the current date and time in a time zone")
+    public static Map<String, Object> currentTime(
+            @Schema(name = "time_zone", description = "IANA time zone such as Europe/Paris or UTC") String timeZone) {
+        try {
+            ZoneId zone = timeZone == null || timeZone.isBlank() ? ZoneId.of("UTC") : ZoneId.of(timeZone.trim());
+            return Map.of("time_zone", zone.getId(),
+                    "current_time", ZonedDateTime.now(zone).format(DateTimeFormatter.ISO_OFFSET_DATE_TIME));
+        } catch (Exception e) {
+            return Map.of("error", "Unknown time zone: " + timeZone);
+        }
+    }
+
+    @Schema(name = "calculate", description = "Evaluates an arithmetic expression with + - * / % ^ and parentheses")
+    public static Map<String, Object> calculate(
+            @Schema(name = "expression", description = "The expression, for example (2 + 3) * 4.5") String expression) {
+        try {
+            return Map.of("expression", expression, "result", new Calculator(expression).evaluate());
+        } catch (RuntimeException e) {
+            return Map.of("error", "Cannot evaluate " + expression + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recursive descent evaluator for the calculate tool. Nesting is capped, so an expression such as
+     * thousands of opening parentheses is refused as an error instead of overflowing the stack.
+     */
+    private static final class Calculator {
+
+        // Each parenthesis, sign or exponent costs one or two levels
+        private static final int MAX_DEPTH = 200;
+
+        private final String input;
+        private int pos;
+        private int depth;
+
+        Calculator(String input) {
+            this.input = input == null ? "" : input;
+        }
+
+        double evaluate() {
+            double value = sum();
+            skipSpaces();
+            if (pos < input.length()) {
+                throw new IllegalArgumentException("unexpected '" + input.charAt(pos) + "'");
+            }
+            return value;
+        }
+
+        private double sum() {
+            double value = product();
+            while (true) {
+                if (accept('+')) {
+                    value += product();
+                } else if (accept('-')) {
+                    value -= product();
+                } else {
+                    return value;
+                }
+            }
+        }
+
+        private double product() {
+            double value = power();
+            while (true) {
+                if (accept('*')) {
+                    value *= power();
+                } else if (accept('/')) {
+                    value /= power();
+                } else if (accept('%')) {
+                    value %= power();
+                } else {
+                    return value;
+                }
+            }
+        }
+
+        private double power() {
+            enter();
+            try {
+                double base = unary();
+                // Right associative: 2^3^2 is 2^(3^2)
+                return accept('^') ? Math.pow(base, power()) : base;
+            } finally {
+                depth--;
+            }
+        }
+
+        private double unary() {
+            enter();
+            try {
+                if (accept('-')) {
+                    return -unary();
+                }
+                if (accept('+')) {
+                    return unary();
+                }
+                if (accept('(')) {
+                    double value = sum();
+                    if (!accept(')')) {
+                        throw new IllegalArgumentException("missing ')'");
+                    }
+                    return value;
+                }
+                return number();
+            } finally {
+                depth--;
+            }
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("expression is nested too deeply");
+            }
+        }
+
+        private double number() {
+            skipSpaces();
+            int start = pos;
+            while (pos < input.length() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException(pos < input.length()
+                        ? "unexpected '" + input.charAt(pos) + "'" : "unexpected end of expression");
+            }
+            return Double.parseDouble(input.substring(start, pos));
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (pos < input.length() && input.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
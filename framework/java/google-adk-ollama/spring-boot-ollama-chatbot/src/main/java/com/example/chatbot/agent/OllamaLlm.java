@@ -0,0 +1,189 @@
+package com.example.chatbot.agent;
+
+import com.example.chatbot.model.OllamaApi;
+import com.example.chatbot.service.OllamaService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.adk.agents.CallbackContext;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import com.google.adk.tools.BaseTool;
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.GenerateContentConfig;
+import com.google.genai.types.Part;
+import com.google.genai.types.Schema;
+import io.reactivex.rxjava3.core.Flowable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * ADK model backed by Ollama's /api/chat, so agents run against the local models and go through
+ * the same routing, admission control and metrics as plain generations.
+ *
+ * <p>ADK contents become chat messages: model turns with function calls become assistant messages with
+ * tool calls, and function responses become tool messages. The agent's tools are offered with their
+ * declarations converted to JSON schema. Answers are not streamed, since tool calls only arrive whole.
+ *
+ * <p>One instance serves every chat session of its agent, and ADK does not hand the session to the model.
+ * The agent's before-model callback, {@link #bindSession}, therefore records which chat session each
+ * request belongs to, read from the ADK session's state, so the call is routed with that session's
+ * backend affinity.
+ */
+final class OllamaLlm extends BaseLlm {
+
+    /**
+     * ADK session state entry holding the id of the chat session the ADK session belongs to
+     */
+    static final String CHAT_SESSION_STATE = "chatSessionId";
+
+    private final OllamaService ollamaService;
+    private final ObjectMapper objectMapper;
+    // Keyed by identity; a request is only referenced while ADK processes it
+    private final Cache<LlmRequest, String> sessionIds = Caffeine.newBuilder().weakKeys().build();
+
+    OllamaLlm(String model, OllamaService ollamaService, ObjectMapper objectMapper) {
+        super(model);
+        this.ollamaService = ollamaService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        return Flowable.defer(() -> {
+            OllamaApi.ChatRequest request = new OllamaApi.ChatRequest(model(), messages(llmRequest),
+                    tools(llmRequest), false, null, null);
+            String sessionId = sessionIds.getIfPresent(llmRequest);
+            return Flowable.fromPublisher(ollamaService.chat(sessionId, request).map(OllamaLlm::toLlmResponse));
+        });
+    }
+
+    /**
+     * Before-model callback: remember the chat session of a request about to be sent. Never answers
+     * in place of the model.
+     */
+    Optional<LlmResponse> bindSession(CallbackContext callbackContext, LlmRequest llmRequest) {
+        if (callbackContext.state().get(CHAT_SESSION_STATE) instanceof String sessionId) {
+            sessionIds.put(llmRequest, sessionId);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        throw new UnsupportedOperationException("Live connections are not supported with Ollama");
+    }
+
+    private List<OllamaApi.Message> messages(LlmRequest llmRequest) {
+        List<OllamaApi.Message> messages = new ArrayList<>();
+        llmRequest.config()
+                .flatMap(GenerateContentConfig::systemInstruction)
+                .map(OllamaLlm::text)
+                .filter(instruction -> !instruction.isBlank())
+                .ifPresent(instruction -> messages.add(new OllamaApi.Message("system", instruction, null, null)));
+
+        for (Content content : llmRequest.contents()) {
+            StringBuilder text = new StringBuilder();
+            List<OllamaApi.ToolCall> toolCalls = new ArrayList<>();
+            for (Part part : content.parts().orElse(List.of())) {
+                part.text().ifPresent(text::append);
+                part.functionCall().ifPresent(call -> toolCalls.add(new OllamaApi.ToolCall(
+                        new OllamaApi.ToolCallFunction(call.name().orElse(""), call.args().orElse(Map.of())))));
+                part.functionResponse().ifPresent(response -> messages.add(new OllamaApi.Message("tool",
+                        toJson(response.response().orElse(Map.of())), null, response.name().orElse(null))));
+            }
+            if (!text.isEmpty() || !toolCalls.isEmpty()) {
+                String role = "model".equals(content.role().orElse("user")) ? "assistant" : "user";
+                messages.add(new OllamaApi.Message(role, text.toString(), toolCalls.isEmpty() ? null : toolCalls, null));
+            }
+        }
+        return messages;
+    }
+
+    private List<OllamaApi.Tool> tools(LlmRequest llmRequest) {
+        List<OllamaApi.Tool> tools = new ArrayList<>();
+        for (BaseTool tool : llmRequest.tools().values()) {
+            tool.declaration().ifPresent(declaration -> tools.add(new OllamaApi.Tool("function",
+                    new OllamaApi.ToolFunction(
+                            declaration.name().orElse(tool.name()),
+                            declaration.description().orElse(tool.description()),
+                            declaration.parameters().map(this::jsonSchema).orElse(null)))));
+        }
+        return tools.isEmpty() ? null : tools;
+    }
+
+    private static LlmResponse toLlmResponse(OllamaApi.ChatResponse response) {
+        List<Part> parts = new ArrayList<>();
+        OllamaApi.Message message = response.message();
+        if (message != null) {
+            if (message.content() != null && !message.content().isEmpty()) {
+                parts.add(Part.fromText(message.content()));
+            }
+            if (message.toolCalls() != null) {
+                for (OllamaApi.ToolCall toolCall : message.toolCalls()) {
+                    // Ollama does not number its tool calls; ADK needs an id to pair each call with its response
+                    parts.add(Part.builder()
+                            .functionCall(FunctionCall.builder()
+                                    .id("ollama-" + UUID.randomUUID())
+                                    .name(toolCall.function().name())
+                                    .args(toolCall.function().arguments() != null ? toolCall.function().arguments() : Map.of())
+                                    .build())
+                            .build());
+                }
+            }
+        }
+        return LlmResponse.builder()
+                .content(Content.builder().role("model").parts(parts).build())
+                .build();
+    }
+
+    /**
+     * Gemini schemas spell types in upper case ("STRING"); JSON schema, which Ollama expects, in lower case
+     */
+    private JsonNode jsonSchema(Schema schema) {
+        try {
+            JsonNode node = objectMapper.readTree(schema.toJson());
+            lowerCaseTypes(node);
+            return node;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot convert tool schema", e);
+        }
+    }
+
+    private static void lowerCaseTypes(JsonNode node) {
+        if (node instanceof ObjectNode object && object.path("type").isTextual()) {
+            object.set("type", TextNode.valueOf(object.get("type").asText().toLowerCase(Locale.ROOT)));
+        }
+        for (JsonNode child : node) {
+            lowerCaseTypes(child);
+        }
+    }
+
+    private String toJson(Map<String, Object> value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(value);
+        }
+    }
+
+    static String text(Content content) {
+        StringBuilder text = new StringBuilder();
+        for (Part part : content.parts().orElse(List.of())) {
+            part.text().ifPresent(text::append);
+        }
+        return text.toString();
+    }
+}
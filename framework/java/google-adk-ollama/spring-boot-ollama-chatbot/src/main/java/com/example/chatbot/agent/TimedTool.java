@@ -0,0 +1,77 @@
+package com.example.chatbot.agent;
+
+import com.google.adk.tools.BaseTool;
+import com.google.adk.tools.ToolContext;
+import com.google.genai.types.FunctionDeclaration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.rxjava3.core.Scheduler;
+import io.reactivex.rxjava3.core.Single;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a tool on its own virtual thread with a timeout.
+ *
+ * <p>ADK subscribes to all tool calls of a model turn together and merges their results, so with each
+ * call on its own thread a turn takes about as long as its slowest tool instead of the sum of all of
+ * them. A call that fails or times out is answered with an error for the model to read rather than
+ * failing the turn; a timed-out call is interrupted.
+ */
+final class TimedTool extends BaseTool {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimedTool.class);
+
+    private final BaseTool delegate;
+    private final Duration timeout;
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+
+    TimedTool(BaseTool delegate, Duration timeout, Scheduler scheduler, MeterRegistry meterRegistry) {
+        super(delegate.name(), delegate.description());
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Optional<FunctionDeclaration> declaration() {
+        return delegate.declaration();
+    }
+
+    @Override
+    public Single<Map<String, Object>> runAsync(Map<String, Object> args, ToolContext toolContext) {
+        return Single.defer(() -> {
+            long startedAt = System.nanoTime();
+            // Deferred so that even a tool that does its work while building the Single runs on the scheduler
+            return Single.defer(() -> delegate.runAsync(args, toolContext))
+                    .subscribeOn(scheduler)
+                    .timeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .doOnSuccess(result -> record("success", startedAt))
+                    .onErrorReturn(error -> {
+                        boolean timedOut = error instanceof TimeoutException;
+                        record(timedOut ? "timeout" : "error", startedAt);
+                        logger.warn("Tool {} {}: {}", name(), timedOut ? "timed out after " + timeout : "failed",
+                                error.toString());
+                        return Map.of("error", timedOut
+                                ? "The tool did not answer within " + timeout.toMillis() + " ms"
+                                : "The tool failed: " + error.getMessage());
+                    });
+        });
+    }
+
+    private void record(String outcome, long startedAt) {
+        Timer.builder("agent.tool.latency")
+                .description("Time an agent tool call took, including a timeout")
+                .tags("tool", name(), "outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration properties for answering chat requests through ADK agents
+ */
+@Component
+@ConfigurationProperties(prefix = "chat.agent")
+public class ChatAgentProperties {
+    
+    private boolean enabled = false;
+    private String name = "chatbot";
+    private String instruction = "You are a helpful assistant. Answer questions clearly and concisely. "
+            + "Use the available tools when they help, and call independent tools together.";
+    private List<String> tools = new ArrayList<>(List.of("current_time", "calculate"));
+    private Duration toolTimeout = Duration.ofSeconds(10);
+    private Map<String, Duration> toolTimeouts = new HashMap<>();
+    private int maxAgents = 32;
+    private Duration sessionIdleTimeout = Duration.ofMinutes(30);
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    public String getInstruction() {
+        return instruction;
+    }
+    
+    public void setInstruction(String instruction) {
+        this.instruction = instruction;
+    }
+    
+    public List<String> getTools() {
+        return tools;
+    }
+    
+    public void setTools(List<String> tools) {
+        this.tools = tools;
+    }
+    
+    public Duration getToolTimeout() {
+        return toolTimeout;
+    }
+    
+    public void setToolTimeout(Duration toolTimeout) {
+        this.toolTimeout = toolTimeout;
+    }
+    
+    public Map<String, Duration> getToolTimeouts() {
+        return toolTimeouts;
+    }
+    
+    public void setToolTimeouts(Map<String, Duration> toolTimeouts) {
+        this.toolTimeouts = toolTimeouts;
+    }
+    
+    /**
+     * Timeout of one call of the named tool, falling back to the common tool timeout
+     */
+    public Duration timeoutFor(String tool) {
+        return toolTimeouts.getOrDefault(tool, toolTimeout);
+    }
+    
+    public int getMaxAgents() {
+        return maxAgents;
+    }
+    
+    public void setMaxAgents(int maxAgents) {
+        this.maxAgents = maxAgents;
+    }
+    
+    public Duration getSessionIdleTimeout() {
+        return sessionIdleTimeout;
+    }
+    
+    public void setSessionIdleTimeout(Duration sessionIdleTimeout) {
+        this.sessionIdleTimeout = sessionIdleTimeout;
+    }
+}
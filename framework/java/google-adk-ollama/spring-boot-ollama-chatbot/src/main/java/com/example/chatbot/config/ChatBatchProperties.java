@@ -0,0 +1,31 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration properties for the batch chat endpoint
+ */
+@Component
+@ConfigurationProperties(prefix = "chat.batch")
+public class ChatBatchProperties {
+    
+    private int concurrency = 4;
+    private int maxItems = 1000;
+    
+    public int getConcurrency() {
+        return concurrency;
+    }
+    
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    
+    public int getMaxItems() {
+        return maxItems;
+    }
+    
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+}
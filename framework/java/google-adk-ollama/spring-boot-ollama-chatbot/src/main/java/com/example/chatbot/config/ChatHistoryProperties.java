@@ -0,0 +1,195 @@
+package com.example.chatbot.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the in-memory chat history store
+ */
+@Component
+@ConfigurationProperties(prefix = "chat.history")
+public class ChatHistoryProperties {
+    
+    private int maxMessages = 200;
+    private int maxTokens = 8000;
+    private Duration idleTimeout = Duration.ofMinutes(30);
+    private Duration evictionInterval = Duration.ofMinutes(1);
+    private int defaultPageSize = 50;
+    private int maxPageSize = 200;
+    private Persistence persistence = new Persistence();
+    private Summarization summarization = new Summarization();
+    
+    public int getMaxMessages() {
+        return maxMessages;
+    }
+    
+    public void setMaxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+    }
+    
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+    
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+    
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+    
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+    
+    public Duration getEvictionInterval() {
+        return evictionInterval;
+    }
+    
+    public void setEvictionInterval(Duration evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+    
+    public int getDefaultPageSize() {
+        return defaultPageSize;
+    }
+    
+    public void setDefaultPageSize(int defaultPageSize) {
+        this.defaultPageSize = defaultPageSize;
+    }
+    
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+    
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+    
+    public Persistence getPersistence() {
+        return persistence;
+    }
+    
+    public void setPersistence(Persistence persistence) {
+        this.persistence = persistence;
+    }
+    
+    public Summarization getSummarization() {
+        return summarization;
+    }
+    
+    public void setSummarization(Summarization summarization) {
+        this.summarization = summarization;
+    }
+    
+    /**
+     * Settings for the optional on-disk history log
+     */
+    public static class Persistence {
+        
+        private boolean enabled = false;
+        private String directory = "data/history";
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        private Duration fsyncInterval = Duration.ofMillis(200);
+        private Duration compactionInterval = Duration.ofMinutes(10);
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public String getDirectory() {
+            return directory;
+        }
+        
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+        
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+        
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+        
+        public Duration getFsyncInterval() {
+            return fsyncInterval;
+        }
+        
+        public void setFsyncInterval(Duration fsyncInterval) {
+            this.fsyncInterval = fsyncInterval;
+        }
+        
+        public Duration getCompactionInterval() {
+            return compactionInterval;
+        }
+        
+        public void setCompactionInterval(Duration compactionInterval) {
+            this.compactionInterval = compactionInterval;
+        }
+    }
+    
+    /**
+     * Settings for summarizing the older turns of long conversations in the background
+     */
+    public static class Summarization {
+        
+        private boolean enabled = false;
+        private String model = "tinyllama";
+        private int contextBudget = 2048;
+        private int keepRecentMessages = 4;
+        private int maxSummaryTokens = 256;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public String getModel() {
+            return model;
+        }
+        
+        public void setModel(String model) {
+            this.model = model;
+        }
+        
+        /**
+         * Context tokens a session may carry before its older turns are summarized
+         */
+        public int getContextBudget() {
+            return contextBudget;
+        }
+        
+        public void setContextBudget(int contextBudget) {
+            this.contextBudget = contextBudget;
+        }
+        
+        public int getKeepRecentMessages() {
+            return keepRecentMessages;
+        }
+        
+        public void setKeepRecentMessages(int keepRecentMessages) {
+            this.keepRecentMessages = keepRecentMessages;
+        }
+        
+        public int getMaxSummaryTokens() {
+            return maxSummaryTokens;
+        }
+        
+        public void setMaxSummaryTokens(int maxSummaryTokens) {
+            this.maxSummaryTokens = maxSummaryTokens;
+        }
+    }
+}
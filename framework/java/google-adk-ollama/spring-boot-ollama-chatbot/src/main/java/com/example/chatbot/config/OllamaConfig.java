@@ -1,9 +1,13 @@
 package com.example.chatbot.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 /**
  * Configuration class for Ollama integration
@@ -18,10 +22,33 @@ public class OllamaConfig {
     @Value("${ollama.model:llama2}")
     private String defaultModel;
     
+    /**
+     * WebClient on an explicitly sized, keep-alive connection pool. The pool should hold at least
+     * as many connections as the admission limits of all models together, so admitted requests
+     * never wait for a connection. It starts from Spring Boot's builder, so responses are decoded
+     * with the application's ObjectMapper and spring.codec settings. Connecting and each wait for
+     * response bytes are bounded, so a dead or hung Ollama fails calls instead of holding them.
+     */
     @Bean
-    public WebClient ollamaWebClient() {
-        return WebClient.builder()
+    public WebClient ollamaWebClient(WebClient.Builder webClientBuilder, OllamaProperties ollamaProperties) {
+        OllamaProperties.Connection connection = ollamaProperties.getConnection();
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("ollama")
+                .maxConnections(connection.getMaxConnections())
+                .pendingAcquireMaxCount(connection.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(connection.getPendingAcquireTimeout())
+                .maxIdleTime(connection.getMaxIdleTime())
+                .maxLifeTime(connection.getMaxLifeTime())
+                .evictInBackground(connection.getEvictionInterval())
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connection.getConnectTimeout().toMillis())
+                .responseTimeout(connection.getReadTimeout());
+        
+        return webClientBuilder
                 .baseUrl(ollamaBaseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeader("Content-Type", "application/json")
                 .build();
     }
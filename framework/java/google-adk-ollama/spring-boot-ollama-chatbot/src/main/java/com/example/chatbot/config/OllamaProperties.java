@@ -2,6 +2,11 @@ package com.example.chatbot.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configuration properties for Ollama integration
@@ -11,7 +16,19 @@ import org.springframework.stereotype.Component;
 public class OllamaProperties {
     
     private String baseUrl = "http://localhost:11434";
+    private List<String> backends = new ArrayList<>();
     private String model = "tinyllama";
+    private List<String> pullModels = new ArrayList<>();
+    private boolean contextReuse = true;
+    private boolean requestCoalescing = true;
+    private ModelCache modelCache = new ModelCache();
+    private ResponseCache responseCache = new ResponseCache();
+    private SemanticCache semanticCache = new SemanticCache();
+    private Admission admission = new Admission();
+    private Connection connection = new Connection();
+    private Routing routing = new Routing();
+    private Lifecycle lifecycle = new Lifecycle();
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
     
     public String getBaseUrl() {
         return baseUrl;
@@ -21,6 +38,14 @@ public class OllamaProperties {
         this.baseUrl = baseUrl;
     }
     
+    public List<String> getBackends() {
+        return backends;
+    }
+    
+    public void setBackends(List<String> backends) {
+        this.backends = backends;
+    }
+    
     public String getModel() {
         return model;
     }
@@ -28,4 +53,569 @@ public class OllamaProperties {
     public void setModel(String model) {
         this.model = model;
     }
+    
+    /**
+     * Models pulled onto a backend the first time they are requested; any other model must already be installed
+     */
+    public List<String> getPullModels() {
+        return pullModels;
+    }
+    
+    public void setPullModels(List<String> pullModels) {
+        this.pullModels = pullModels;
+    }
+    
+    public boolean isContextReuse() {
+        return contextReuse;
+    }
+    
+    public void setContextReuse(boolean contextReuse) {
+        this.contextReuse = contextReuse;
+    }
+    
+    public boolean isRequestCoalescing() {
+        return requestCoalescing;
+    }
+    
+    public void setRequestCoalescing(boolean requestCoalescing) {
+        this.requestCoalescing = requestCoalescing;
+    }
+    
+    public ModelCache getModelCache() {
+        return modelCache;
+    }
+    
+    public void setModelCache(ModelCache modelCache) {
+        this.modelCache = modelCache;
+    }
+    
+    public ResponseCache getResponseCache() {
+        return responseCache;
+    }
+    
+    public void setResponseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+    
+    public SemanticCache getSemanticCache() {
+        return semanticCache;
+    }
+    
+    public void setSemanticCache(SemanticCache semanticCache) {
+        this.semanticCache = semanticCache;
+    }
+    
+    public Admission getAdmission() {
+        return admission;
+    }
+    
+    public void setAdmission(Admission admission) {
+        this.admission = admission;
+    }
+    
+    public Connection getConnection() {
+        return connection;
+    }
+    
+    public void setConnection(Connection connection) {
+        this.connection = connection;
+    }
+    
+    public Routing getRouting() {
+        return routing;
+    }
+    
+    public void setRouting(Routing routing) {
+        this.routing = routing;
+    }
+    
+    public Lifecycle getLifecycle() {
+        return lifecycle;
+    }
+    
+    public void setLifecycle(Lifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+    
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+    
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+    
+    /**
+     * Settings for the cached view of the models installed in Ollama
+     */
+    public static class ModelCache {
+        
+        private Duration ttl = Duration.ofSeconds(60);
+        private Duration refreshInterval = Duration.ofSeconds(30);
+        
+        public Duration getTtl() {
+            return ttl;
+        }
+        
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+        
+        public Duration getRefreshInterval() {
+            return refreshInterval;
+        }
+        
+        public void setRefreshInterval(Duration refreshInterval) {
+            this.refreshInterval = refreshInterval;
+        }
+    }
+    
+    /**
+     * Settings for the opt-in cache of complete responses
+     */
+    public static class ResponseCache {
+        
+        private boolean enabled = false;
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+        private Duration ttl = Duration.ofHours(1);
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public DataSize getMaxSize() {
+            return maxSize;
+        }
+        
+        public void setMaxSize(DataSize maxSize) {
+            this.maxSize = maxSize;
+        }
+        
+        public Duration getTtl() {
+            return ttl;
+        }
+        
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+    
+    /**
+     * Settings for the opt-in cache that answers paraphrased prompts
+     */
+    public static class SemanticCache {
+        
+        private boolean enabled = false;
+        private String embeddingModel = "nomic-embed-text";
+        private double similarityThreshold = 0.95;
+        private int maxEntriesPerModel = 10_000;
+        private int maxPartitions = 32;
+        private Duration ttl = Duration.ofHours(1);
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public String getEmbeddingModel() {
+            return embeddingModel;
+        }
+        
+        public void setEmbeddingModel(String embeddingModel) {
+            this.embeddingModel = embeddingModel;
+        }
+        
+        public double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+        
+        public void setSimilarityThreshold(double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+        
+        public int getMaxEntriesPerModel() {
+            return maxEntriesPerModel;
+        }
+        
+        public void setMaxEntriesPerModel(int maxEntriesPerModel) {
+            this.maxEntriesPerModel = maxEntriesPerModel;
+        }
+        
+        /**
+         * Most (model, options) partitions kept at once; the least recently used one is dropped beyond it
+         */
+        public int getMaxPartitions() {
+            return maxPartitions;
+        }
+        
+        public void setMaxPartitions(int maxPartitions) {
+            this.maxPartitions = maxPartitions;
+        }
+        
+        public Duration getTtl() {
+            return ttl;
+        }
+        
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+    
+    /**
+     * Settings for the per-model limit on generations sent to Ollama at the same time
+     */
+    public static class Admission {
+        
+        private boolean enabled = true;
+        private int maxConcurrent = 4;
+        private int queueSize = 32;
+        private Duration queueTimeout = Duration.ofSeconds(30);
+        private boolean adaptive = false;
+        private int minLimit = 1;
+        private int maxLimit = 16;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+        
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+        
+        public int getQueueSize() {
+            return queueSize;
+        }
+        
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+        
+        public Duration getQueueTimeout() {
+            return queueTimeout;
+        }
+        
+        public void setQueueTimeout(Duration queueTimeout) {
+            this.queueTimeout = queueTimeout;
+        }
+        
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+        
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+        
+        public int getMinLimit() {
+            return minLimit;
+        }
+        
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+        
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+        
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+    }
+    
+    /**
+     * Settings for the HTTP connection pool shared by all calls to Ollama
+     */
+    public static class Connection {
+        
+        private int maxConnections = 32;
+        private int pendingAcquireMaxCount = 256;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration readTimeout = Duration.ofMinutes(2);
+        private Duration pullReadTimeout = Duration.ofMinutes(10);
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictionInterval = Duration.ofSeconds(30);
+        
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+        
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+        
+        public int getPendingAcquireMaxCount() {
+            return pendingAcquireMaxCount;
+        }
+        
+        public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+            this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+        }
+        
+        public Duration getPendingAcquireTimeout() {
+            return pendingAcquireTimeout;
+        }
+        
+        public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+            this.pendingAcquireTimeout = pendingAcquireTimeout;
+        }
+        
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+        
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+        
+        /**
+         * Longest silence allowed while waiting for a response or between two of its chunks
+         */
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+        
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+        
+        /**
+         * Read timeout of model pulls instead of readTimeout: Ollama can be silent for minutes while it
+         * verifies or writes a large model between two progress lines
+         */
+        public Duration getPullReadTimeout() {
+            return pullReadTimeout;
+        }
+        
+        public void setPullReadTimeout(Duration pullReadTimeout) {
+            this.pullReadTimeout = pullReadTimeout;
+        }
+        
+        public Duration getMaxIdleTime() {
+            return maxIdleTime;
+        }
+        
+        public void setMaxIdleTime(Duration maxIdleTime) {
+            this.maxIdleTime = maxIdleTime;
+        }
+        
+        public Duration getMaxLifeTime() {
+            return maxLifeTime;
+        }
+        
+        public void setMaxLifeTime(Duration maxLifeTime) {
+            this.maxLifeTime = maxLifeTime;
+        }
+        
+        public Duration getEvictionInterval() {
+            return evictionInterval;
+        }
+        
+        public void setEvictionInterval(Duration evictionInterval) {
+            this.evictionInterval = evictionInterval;
+        }
+    }
+    
+    /**
+     * Settings for spreading requests over several Ollama backends
+     */
+    public static class Routing {
+        
+        private Duration healthCheckInterval = Duration.ofSeconds(10);
+        private Duration healthCheckTimeout = Duration.ofSeconds(2);
+        private int unhealthyThreshold = 2;
+        private int healthyThreshold = 2;
+        private boolean sessionAffinity = true;
+        private Duration affinityTtl = Duration.ofMinutes(30);
+        
+        public Duration getHealthCheckInterval() {
+            return healthCheckInterval;
+        }
+        
+        public void setHealthCheckInterval(Duration healthCheckInterval) {
+            this.healthCheckInterval = healthCheckInterval;
+        }
+        
+        public Duration getHealthCheckTimeout() {
+            return healthCheckTimeout;
+        }
+        
+        public void setHealthCheckTimeout(Duration healthCheckTimeout) {
+            this.healthCheckTimeout = healthCheckTimeout;
+        }
+        
+        public int getUnhealthyThreshold() {
+            return unhealthyThreshold;
+        }
+        
+        public void setUnhealthyThreshold(int unhealthyThreshold) {
+            this.unhealthyThreshold = unhealthyThreshold;
+        }
+        
+        public int getHealthyThreshold() {
+            return healthyThreshold;
+        }
+        
+        public void setHealthyThreshold(int healthyThreshold) {
+            this.healthyThreshold = healthyThreshold;
+        }
+        
+        public boolean isSessionAffinity() {
+            return sessionAffinity;
+        }
+        
+        public void setSessionAffinity(boolean sessionAffinity) {
+            this.sessionAffinity = sessionAffinity;
+        }
+        
+        public Duration getAffinityTtl() {
+            return affinityTtl;
+        }
+        
+        public void setAffinityTtl(Duration affinityTtl) {
+            this.affinityTtl = affinityTtl;
+        }
+    }
+    
+    /**
+     * Settings for preloading models and for how long Ollama keeps them in memory
+     */
+    public static class Lifecycle {
+        
+        private boolean enabled = true;
+        private List<String> preload = new ArrayList<>();
+        private Duration hotKeepAlive = Duration.ofHours(1);
+        private Duration coldKeepAlive = Duration.ofMinutes(5);
+        private double hotThreshold = 1.0;
+        private Duration coldAfter = Duration.ofMinutes(10);
+        private Duration evaluationInterval = Duration.ofSeconds(30);
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public List<String> getPreload() {
+            return preload;
+        }
+        
+        public void setPreload(List<String> preload) {
+            this.preload = preload;
+        }
+        
+        public Duration getHotKeepAlive() {
+            return hotKeepAlive;
+        }
+        
+        public void setHotKeepAlive(Duration hotKeepAlive) {
+            this.hotKeepAlive = hotKeepAlive;
+        }
+        
+        public Duration getColdKeepAlive() {
+            return coldKeepAlive;
+        }
+        
+        public void setColdKeepAlive(Duration coldKeepAlive) {
+            this.coldKeepAlive = coldKeepAlive;
+        }
+        
+        /**
+         * Requests per minute above which a model counts as hot
+         */
+        public double getHotThreshold() {
+            return hotThreshold;
+        }
+        
+        public void setHotThreshold(double hotThreshold) {
+            this.hotThreshold = hotThreshold;
+        }
+        
+        public Duration getColdAfter() {
+            return coldAfter;
+        }
+        
+        public void setColdAfter(Duration coldAfter) {
+            this.coldAfter = coldAfter;
+        }
+        
+        public Duration getEvaluationInterval() {
+            return evaluationInterval;
+        }
+        
+        public void setEvaluationInterval(Duration evaluationInterval) {
+            this.evaluationInterval = evaluationInterval;
+        }
+    }
+    
+    /**
+     * Settings for the circuit breaker that fails requests fast while Ollama is down or too slow
+     */
+    public static class CircuitBreaker {
+        
+        private boolean enabled = true;
+        private int failureThreshold = 5;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private int halfOpenProbes = 2;
+        
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        /**
+         * Consecutive failed calls that open the breaker
+         */
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+        
+        public void setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+        }
+        
+        /**
+         * How long the breaker stays open before letting probe calls through
+         */
+        public Duration getOpenDuration() {
+            return openDuration;
+        }
+        
+        public void setOpenDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+        }
+        
+        /**
+         * Probe calls that must all succeed, while half open, to close the breaker again
+         */
+        public int getHalfOpenProbes() {
+            return halfOpenProbes;
+        }
+        
+        public void setHalfOpenProbes(int halfOpenProbes) {
+            this.halfOpenProbes = halfOpenProbes;
+        }
+    }
 }
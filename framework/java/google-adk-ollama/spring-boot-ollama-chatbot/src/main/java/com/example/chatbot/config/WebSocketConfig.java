@@ -0,0 +1,59 @@
+package com.example.chatbot.config;
+
+import com.example.chatbot.controller.ReactiveChatWebSocketHandler;
+import com.example.chatbot.controller.ServletChatWebSocketHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import java.util.Map;
+
+/**
+ * Maps the /ws/chat WebSocket channel on whichever web runtime the application was built for
+ */
+public class WebSocketConfig {
+    
+    public static final String CHAT_PATH = "/ws/chat";
+    
+    private WebSocketConfig() {
+    }
+    
+    /**
+     * Spring MVC on Tomcat
+     */
+    @Configuration
+    @EnableWebSocket
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class Servlet implements WebSocketConfigurer {
+        
+        private final ServletChatWebSocketHandler handler;
+        
+        Servlet(ServletChatWebSocketHandler handler) {
+            this.handler = handler;
+        }
+        
+        @Override
+        public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+            registry.addHandler(handler, CHAT_PATH);
+        }
+    }
+    
+    /**
+     * WebFlux on Netty
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class Reactive {
+        
+        @Bean
+        public HandlerMapping chatWebSocketMapping(ReactiveChatWebSocketHandler handler) {
+            // Ahead of the annotated controllers
+            return new SimpleUrlHandlerMapping(Map.of(CHAT_PATH, handler), -1);
+        }
+    }
+}
@@ -1,20 +1,38 @@
 package com.example.chatbot.controller;
 
+import com.example.chatbot.config.ChatBatchProperties;
+import com.example.chatbot.dto.BatchChatResult;
 import com.example.chatbot.dto.ChatRequest;
 import com.example.chatbot.dto.ChatResponse;
-import com.example.chatbot.model.ChatMessage;
+import com.example.chatbot.dto.HistoryPage;
+import com.example.chatbot.service.AdmissionRejectedException;
 import com.example.chatbot.service.ChatService;
+import com.example.chatbot.service.ModelLifecycleManager;
+import com.example.chatbot.service.OllamaCircuitBreaker;
+import com.example.chatbot.service.OllamaUnavailableException;
+import com.example.chatbot.service.UnknownModelException;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
 
 /**
  * Web controller for handling chat interactions
@@ -24,21 +42,34 @@ public class ChatController {
     
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
     
+    // Each browser keeps its own conversation: the page names its session and the page's script stores it in
+    // this cookie, so a reload renders the same conversation. Only read here, which works on both web stacks.
+    static final String SESSION_COOKIE = "chatSessionId";
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+    
     private final ChatService chatService;
+    private final ChatBatchProperties batchProperties;
     
     @Autowired
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, ChatBatchProperties batchProperties) {
         this.chatService = chatService;
+        this.batchProperties = batchProperties;
     }
     
     /**
-     * Display the main chat page
+     * Display the main chat page with the browser's own conversation, starting one on the first visit
      */
     @GetMapping("/")
-    public String chatPage(Model model) {
-        model.addAttribute("chatRequest", new ChatRequest());
-        model.addAttribute("chatHistory", chatService.getChatHistory("default"));
-        return "chat";
+    public Mono<String> chatPage(@CookieValue(name = SESSION_COOKIE, required = false) String sessionCookie,
+                                 Model model) {
+        String sessionId = browserSession(sessionCookie);
+        return chatService.getChatHistory(sessionId)
+                .map(history -> {
+                    model.addAttribute("chatRequest", newChatRequest(sessionId));
+                    model.addAttribute("chatHistory", history);
+                    model.addAttribute("sessionId", sessionId);
+                    return "chat";
+                });
     }
     
     /**
@@ -47,20 +78,29 @@ public class ChatController {
     @PostMapping("/chat")
     public Mono<String> sendMessage(@Valid @ModelAttribute ChatRequest chatRequest, 
                                    BindingResult bindingResult, 
+                                   @CookieValue(name = SESSION_COOKIE, required = false) String sessionCookie,
                                    Model model) {
         
+        if (chatRequest.getSessionId() == null || chatRequest.getSessionId().isBlank()) {
+            chatRequest.setSessionId(browserSession(sessionCookie));
+        }
+        model.addAttribute("sessionId", sessionId(chatRequest));
         if (bindingResult.hasErrors()) {
-            model.addAttribute("chatHistory", chatService.getChatHistory("default"));
-            return Mono.just("chat");
+            return chatService.getChatHistory(sessionId(chatRequest))
+                    .map(history -> {
+                        model.addAttribute("chatHistory", history);
+                        return "chat";
+                    });
         }
         
         return chatService.processMessage(chatRequest)
-                .map(response -> {
-                    model.addAttribute("chatRequest", new ChatRequest());
-                    model.addAttribute("chatHistory", chatService.getChatHistory("default"));
-                    model.addAttribute("lastResponse", response);
-                    return "chat";
-                });
+                .flatMap(answer -> chatService.getChatHistory(sessionId(chatRequest))
+                        .map(history -> {
+                            model.addAttribute("chatRequest", newChatRequest(sessionId(chatRequest)));
+                            model.addAttribute("chatHistory", history);
+                            model.addAttribute("lastResponse", answer);
+                            return "chat";
+                        }));
     }
     
     /**
@@ -74,12 +114,75 @@ public class ChatController {
     }
     
     /**
-     * Get chat history via REST API
+     * Streaming REST API endpoint: emits one "token" event per generated chunk,
+     * followed by a "done" event (or an "error" event if generation fails)
+     */
+    @PostMapping(value = "/api/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public Flux<ServerSentEvent<String>> streamMessageApi(@Valid @RequestBody ChatRequest chatRequest) {
+        logger.info("Received API chat stream request: {}", chatRequest);
+        return chatService.streamMessage(chatRequest)
+                .map(token -> ServerSentEvent.builder(token).event("token").build())
+                .concatWith(Mono.just(ServerSentEvent.builder("").event("done").build()))
+                .onErrorResume(error -> {
+                    if (error instanceof AdmissionRejectedException rejected) {
+                        // Headers are already sent; the SSE retry field tells the client when to come back
+                        logger.warn("Rejected chat stream request: {}", rejected.getMessage());
+                        return Mono.just(ServerSentEvent
+                                .builder("The model is busy, please try again shortly.")
+                                .event("error")
+                                .retry(rejected.getRetryAfter())
+                                .build());
+                    }
+                    if (error instanceof OllamaUnavailableException unavailable) {
+                        logger.warn("Rejected chat stream request: {}", unavailable.getMessage());
+                        return Mono.just(ServerSentEvent
+                                .builder("The language model is unavailable, please try again shortly.")
+                                .event("error")
+                                .retry(unavailable.getRetryAfter())
+                                .build());
+                    }
+                    if (error instanceof UnknownModelException unknown) {
+                        logger.warn("Rejected chat stream request: {}", unknown.getMessage());
+                        return Mono.just(ServerSentEvent
+                                .builder("Model " + unknown.getModel() + " is not available.")
+                                .event("error")
+                                .build());
+                    }
+                    logger.error("Error streaming chat response", error);
+                    return Mono.just(ServerSentEvent
+                            .builder("Sorry, I encountered an error processing your message.")
+                            .event("error")
+                            .build());
+                });
+    }
+    
+    /**
+     * Batch REST API endpoint: answers every request of the array and streams one NDJSON line per
+     * result as soon as it is ready, tagged with the request's index. Disconnecting cancels the rest.
+     */
+    @PostMapping(value = "/api/chat/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseBody
+    public Flux<BatchChatResult> sendBatchApi(@RequestBody List<ChatRequest> chatRequests) {
+        if (chatRequests.size() > batchProperties.getMaxItems()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "A batch may contain at most " + batchProperties.getMaxItems() + " requests");
+        }
+        logger.info("Received API chat batch request with {} items", chatRequests.size());
+        return chatService.processBatch(chatRequests)
+                .doOnCancel(() -> logger.info("Chat batch cancelled by the client"));
+    }
+    
+    /**
+     * Get chat history via REST API, one page at a time.
+     * Pass the returned nextCursor as cursor to read the following page.
      */
     @GetMapping("/api/chat/history")
     @ResponseBody
-    public List<ChatMessage> getChatHistory(@RequestParam(defaultValue = "default") String sessionId) {
-        return chatService.getChatHistory(sessionId);
+    public Mono<HistoryPage> getChatHistory(@RequestParam(defaultValue = "default") String sessionId,
+                                            @RequestParam(required = false) Long cursor,
+                                            @RequestParam(required = false) Integer limit) {
+        return chatService.getChatHistoryPage(sessionId, cursor, limit);
     }
     
     /**
@@ -87,9 +190,9 @@ public class ChatController {
      */
     @DeleteMapping("/api/chat/history")
     @ResponseBody
-    public String clearChatHistory(@RequestParam(defaultValue = "default") String sessionId) {
-        chatService.clearChatHistory(sessionId);
-        return "Chat history cleared";
+    public Mono<String> clearChatHistory(@RequestParam(defaultValue = "default") String sessionId) {
+        return chatService.clearChatHistory(sessionId)
+                .thenReturn("Chat history cleared");
     }
       /**
      * Health check endpoint
@@ -101,7 +204,17 @@ public class ChatController {
                 .map(isHealthy -> isHealthy ? 
                     "✅ Chatbot service is running and Ollama is available!" : 
                     "⚠️ Chatbot service is running but Ollama is not available")
-                .onErrorReturn("❌ Chatbot service is running but there are connection issues");
+                .onErrorReturn("❌ Chatbot service is running but there are connection issues")
+                .map(status -> status + circuitBreakerSummary() + modelSummary());
+    }
+    
+    /**
+     * Load state of every model in use
+     */
+    @GetMapping("/api/models/state")
+    @ResponseBody
+    public Map<String, Object> getModelStates() {
+        return chatService.getModelStates();
     }
     
     /**
@@ -113,4 +226,157 @@ public class ChatController {
         return chatService.getAvailableModels()
                 .onErrorReturn("{\"error\":\"Could not retrieve models\"}");
     }
+    
+    /**
+     * Model availability cache counters
+     */
+    @GetMapping("/api/models/stats")
+    @ResponseBody
+    public Map<String, Long> getModelCacheStats() {
+        return chatService.getModelCacheStats();
+    }
+    
+    /**
+     * Request coalescing counters
+     */
+    @GetMapping("/api/chat/stats")
+    @ResponseBody
+    public Map<String, Object> getCoalescingStats() {
+        return chatService.getCoalescingStats();
+    }
+    
+    /**
+     * Summarization counters, with the input tokens and latency of turns before and after summarization
+     */
+    @GetMapping("/api/chat/summarization/stats")
+    @ResponseBody
+    public Map<String, Object> getSummarizationStats() {
+        return chatService.getSummarizationStats();
+    }
+    
+    /**
+     * Response cache counters
+     */
+    @GetMapping("/api/cache/stats")
+    @ResponseBody
+    public Map<String, Object> getResponseCacheStats() {
+        return chatService.getResponseCacheStats();
+    }
+    
+    /**
+     * Semantic cache counters
+     */
+    @GetMapping("/api/cache/semantic/stats")
+    @ResponseBody
+    public Map<String, Object> getSemanticCacheStats() {
+        return chatService.getSemanticCacheStats();
+    }
+    
+    /**
+     * Per-model admission control counters
+     */
+    @GetMapping("/api/admission/stats")
+    @ResponseBody
+    public Map<String, Object> getAdmissionStats() {
+        return chatService.getAdmissionStats();
+    }
+    
+    /**
+     * Built agents, agent sessions and the tools they can call
+     */
+    @GetMapping("/api/agents/stats")
+    @ResponseBody
+    public Map<String, Object> getAgentStats() {
+        return chatService.getAgentStats();
+    }
+    
+    /**
+     * State and counters of the circuit breaker in front of Ollama
+     */
+    @GetMapping("/api/circuit-breaker")
+    @ResponseBody
+    public Map<String, Object> getCircuitBreakerStats() {
+        return chatService.getCircuitBreakerStats();
+    }
+    
+    /**
+     * Health, load and pinned sessions of every Ollama backend
+     */
+    @GetMapping("/api/backends")
+    @ResponseBody
+    public List<Map<String, Object>> getBackendStats() {
+        return chatService.getBackendStats();
+    }
+    
+    /**
+     * Answer requests turned away by admission control with 429 and a Retry-After header
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    @ResponseBody
+    public ResponseEntity<ChatResponse> handleAdmissionRejected(AdmissionRejectedException rejected) {
+        logger.warn("Rejected chat request: {}", rejected.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, rejected.getRetryAfter().toSeconds())))
+                .body(ChatResponse.error("The model is busy, please try again shortly."));
+    }
+    
+    /**
+     * Answer requests for a model that is neither installed nor pulled on demand with 400
+     */
+    @ExceptionHandler(UnknownModelException.class)
+    @ResponseBody
+    public ResponseEntity<ChatResponse> handleUnknownModel(UnknownModelException unknown) {
+        logger.warn("Rejected chat request: {}", unknown.getMessage());
+        return ResponseEntity.badRequest()
+                .body(ChatResponse.error("Model " + unknown.getModel() + " is not available."));
+    }
+    
+    /**
+     * Answer requests failed fast while Ollama is unavailable with 503 and a Retry-After header
+     */
+    @ExceptionHandler(OllamaUnavailableException.class)
+    @ResponseBody
+    public ResponseEntity<ChatResponse> handleOllamaUnavailable(OllamaUnavailableException unavailable) {
+        logger.warn("Rejected chat request: {}", unavailable.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, unavailable.getRetryAfter().toSeconds())))
+                .body(ChatResponse.error("The language model is unavailable, please try again shortly."));
+    }
+    
+    private String circuitBreakerSummary() {
+        OllamaCircuitBreaker.State state = chatService.getCircuitBreakerState();
+        return " Circuit breaker: " + state.name().toLowerCase(Locale.ROOT).replace('_', ' ') + ".";
+    }
+    
+    private String modelSummary() {
+        Map<String, ModelLifecycleManager.LoadState> states = chatService.getModelLoadStates();
+        if (states.isEmpty()) {
+            return "";
+        }
+        StringBuilder summary = new StringBuilder(" Models:");
+        states.forEach((model, state) -> summary.append(' ').append(model).append(' ')
+                .append(state.name().toLowerCase(Locale.ROOT).replace('_', ' ')).append(','));
+        summary.setLength(summary.length() - 1);
+        return summary.toString();
+    }
+    
+    /**
+     * The browser's chat session from its cookie, or a new one if it has none or a malformed one
+     */
+    private static String browserSession(String sessionCookie) {
+        return sessionCookie != null && SESSION_ID.matcher(sessionCookie).matches()
+                ? sessionCookie
+                : UUID.randomUUID().toString();
+    }
+    
+    private static ChatRequest newChatRequest(String sessionId) {
+        ChatRequest chatRequest = new ChatRequest();
+        chatRequest.setSessionId(sessionId);
+        return chatRequest;
+    }
+    
+    private static String sessionId(ChatRequest chatRequest) {
+        String sessionId = chatRequest.getSessionId();
+        return sessionId != null && !sessionId.isBlank() ? sessionId.trim() : "default";
+    }
 }
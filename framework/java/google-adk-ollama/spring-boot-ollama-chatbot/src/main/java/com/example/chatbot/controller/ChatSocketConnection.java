@@ -0,0 +1,137 @@
+package com.example.chatbot.controller;
+
+import com.example.chatbot.dto.ChatRequest;
+import com.example.chatbot.service.AdmissionRejectedException;
+import com.example.chatbot.service.ChatService;
+import com.example.chatbot.service.OllamaUnavailableException;
+import com.example.chatbot.service.UnknownModelException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * One WebSocket chat connection, independent of the web runtime serving it.
+ *
+ * <p>The client sends JSON frames: {@code {"type":"chat","message":...}} with the same optional
+ * {@code sessionId}, {@code model} and {@code options} as /api/chat starts a generation, and
+ * {@code {"type":"cancel"}} stops it. The answer comes back as {@code token} frames followed by
+ * {@code done}, or by {@code cancelled} or {@code error}. One generation runs at a time.
+ *
+ * <p>Cancelling, or closing the connection, disposes the subscription to the generation, which closes
+ * the HTTP request to Ollama so that it stops generating and frees the model's admission slot.
+ */
+final class ChatSocketConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatSocketConnection.class);
+
+    private final ChatService chatService;
+    private final ObjectMapper objectMapper;
+    private final Consumer<String> sender;
+
+    // Guarded by this connection's monitor, which also keeps outgoing frames in order
+    private Disposable generation;
+    private boolean closed;
+
+    ChatSocketConnection(ChatService chatService, ObjectMapper objectMapper, Consumer<String> sender) {
+        this.chatService = chatService;
+        this.objectMapper = objectMapper;
+        this.sender = sender;
+    }
+
+    void onFrame(String payload) {
+        JsonNode frame;
+        try {
+            frame = objectMapper.readTree(payload);
+        } catch (JsonProcessingException e) {
+            send(error("Frames must be JSON objects", null));
+            return;
+        }
+        switch (frame.path("type").asText("")) {
+            case "chat" -> start(frame);
+            case "cancel" -> cancel();
+            default -> send(error("Unknown frame type, expected chat or cancel", null));
+        }
+    }
+
+    /**
+     * The client went away: stop whatever is still generating for it
+     */
+    synchronized void onClose() {
+        closed = true;
+        if (generation != null && !generation.isDisposed()) {
+            logger.info("WebSocket closed during a generation, cancelling it");
+            generation.dispose();
+        }
+    }
+
+    private synchronized void start(JsonNode frame) {
+        if (closed) {
+            return;
+        }
+        if (generation != null && !generation.isDisposed()) {
+            send(error("A generation is already running; cancel it first", null));
+            return;
+        }
+        ChatRequest request;
+        try {
+            request = objectMapper.treeToValue(frame, ChatRequest.class);
+        } catch (JsonProcessingException e) {
+            send(error("Malformed chat frame", null));
+            return;
+        }
+        if (request.getMessage() == null || request.getMessage().isBlank()) {
+            send(error("Message cannot be empty", null));
+            return;
+        }
+        generation = chatService.streamMessage(request)
+                .subscribe(
+                        token -> send(frame("token").put("content", token)),
+                        this::onError,
+                        () -> send(frame("done")));
+    }
+
+    private synchronized void cancel() {
+        if (generation != null && !generation.isDisposed()) {
+            generation.dispose();
+            send(frame("cancelled"));
+        }
+    }
+
+    private void onError(Throwable error) {
+        if (error instanceof AdmissionRejectedException rejected) {
+            send(error("The model is busy, please try again shortly.", rejected.getRetryAfter()));
+        } else if (error instanceof OllamaUnavailableException unavailable) {
+            send(error("The language model is unavailable, please try again shortly.", unavailable.getRetryAfter()));
+        } else if (error instanceof UnknownModelException unknown) {
+            send(error("Model " + unknown.getModel() + " is not available.", null));
+        } else {
+            logger.error("Error streaming chat response over WebSocket", error);
+            send(error("Sorry, I encountered an error processing your message.", null));
+        }
+    }
+
+    private synchronized void send(ObjectNode frame) {
+        if (!closed) {
+            sender.accept(frame.toString());
+        }
+    }
+
+    private ObjectNode frame(String type) {
+        return objectMapper.createObjectNode().put("type", type);
+    }
+
+    private ObjectNode error(String message, Duration retryAfter) {
+        ObjectNode frame = frame("error").put("message", message);
+        if (retryAfter != null) {
+            frame.put("retryAfterSeconds", Math.max(1, retryAfter.toSeconds()));
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.chatbot.controller;
+
+import com.example.chatbot.service.ChatService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * The /ws/chat channel on the reactive runtime, see {@link ChatSocketConnection}
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveChatWebSocketHandler implements WebSocketHandler {
+
+    private final ChatService chatService;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public ReactiveChatWebSocketHandler(ChatService chatService, ObjectMapper objectMapper) {
+        this.chatService = chatService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        // The connection sends under its own lock, so emissions into the sink never overlap
+        Sinks.Many<String> outbound = Sinks.many().unicast().onBackpressureBuffer();
+        ChatSocketConnection connection = new ChatSocketConnection(chatService, objectMapper, outbound::tryEmitNext);
+
+        Mono<Void> input = session.receive()
+                .filter(message -> message.getType() == WebSocketMessage.Type.TEXT)
+                .doOnNext(message -> connection.onFrame(message.getPayloadAsText()))
+                .doFinally(signal -> {
+                    connection.onClose();
+                    outbound.tryEmitComplete();
+                })
+                .then();
+        Mono<Void> output = session.send(outbound.asFlux().map(session::textMessage));
+        return Mono.when(input, output);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chatbot.controller;
+
+import com.example.chatbot.service.ChatService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The /ws/chat channel on the servlet runtime, see {@link ChatSocketConnection}
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ServletChatWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServletChatWebSocketHandler.class);
+
+    private static final int SEND_TIME_LIMIT_MILLIS = 10_000;
+    private static final int SEND_BUFFER_LIMIT_BYTES = 512 * 1024;
+
+    private final ChatService chatService;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentHashMap<String, ChatSocketConnection> connections = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ServletChatWebSocketHandler(ChatService chatService, ObjectMapper objectMapper) {
+        this.chatService = chatService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // Tokens are sent from Reactor threads; the decorator lets a slow client buffer instead of blocking them
+        WebSocketSession outbound = new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MILLIS, SEND_BUFFER_LIMIT_BYTES);
+        connections.put(session.getId(), new ChatSocketConnection(chatService, objectMapper, text -> {
+            try {
+                outbound.sendMessage(new TextMessage(text));
+            } catch (IOException e) {
+                logger.debug("Could not send to WebSocket {}: {}", session.getId(), e.getMessage());
+            }
+        }));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        ChatSocketConnection connection = connections.get(session.getId());
+        if (connection != null) {
+            connection.onFrame(message.getPayload());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        ChatSocketConnection connection = connections.remove(session.getId());
+        if (connection != null) {
+            connection.onClose();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.chatbot.dto;
+
+/**
+ * One line of a batch chat response: the outcome of the request at {@code index} in the submitted array
+ */
+public class BatchChatResult {
+    
+    private int index;
+    private ChatResponse response;
+    
+    public BatchChatResult() {}
+    
+    public BatchChatResult(int index, ChatResponse response) {
+        this.index = index;
+        this.response = response;
+    }
+    
+    public int getIndex() {
+        return index;
+    }
+    
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public ChatResponse getResponse() {
+        return response;
+    }
+    
+    public void setResponse(ChatResponse response) {
+        this.response = response;
+    }
+}
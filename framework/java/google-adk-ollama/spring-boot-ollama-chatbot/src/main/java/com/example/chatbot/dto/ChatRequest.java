@@ -2,6 +2,8 @@ package com.example.chatbot.dto;
 
 import jakarta.validation.constraints.NotBlank;
 
+import java.util.Map;
+
 public class ChatRequest {
     
     @NotBlank(message = "Message cannot be empty")
@@ -9,6 +11,10 @@ public class ChatRequest {
     
     private String model;
     
+    private String sessionId;
+    
+    private Map<String, Object> options;
+    
     public ChatRequest() {}
     
     public ChatRequest(String message, String model) {
@@ -32,11 +38,29 @@ public class ChatRequest {
         this.model = model;
     }
     
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+    
+    public Map<String, Object> getOptions() {
+        return options;
+    }
+    
+    public void setOptions(Map<String, Object> options) {
+        this.options = options;
+    }
+    
     @Override
     public String toString() {
         return "ChatRequest{" +
                 "message='" + message + '\'' +
                 ", model='" + model + '\'' +
+                ", sessionId='" + sessionId + '\'' +
+                ", options=" + options +
                 '}';
     }
 }
@@ -0,0 +1,48 @@
+package com.example.chatbot.dto;
+
+import com.example.chatbot.model.ChatMessage;
+
+import java.util.List;
+
+/**
+ * One page of a session's chat history.
+ * Pass {@code nextCursor} back as the {@code cursor} parameter to fetch the following page.
+ */
+public class HistoryPage {
+    
+    private List<ChatMessage> messages;
+    private Long nextCursor;
+    private boolean hasMore;
+    
+    public HistoryPage() {}
+    
+    public HistoryPage(List<ChatMessage> messages, Long nextCursor, boolean hasMore) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+    
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+    
+    public void setMessages(List<ChatMessage> messages) {
+        this.messages = messages;
+    }
+    
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.chatbot.model;
+
+/**
+ * Result of a single Ollama generation: the response text, the
+ * context tokens that let the next turn continue from the same KV state,
+ * and the token counts and timings Ollama reports for the call
+ */
+public class GenerationResult {
+    
+    private final String response;
+    private final int[] context;
+    private final long promptEvalCount;
+    private final long promptEvalDurationNanos;
+    private final long evalCount;
+    private final long evalDurationNanos;
+    private final long loadDurationNanos;
+    private final long totalDurationNanos;
+    
+    public GenerationResult(String response, int[] context, long promptEvalCount, long promptEvalDurationNanos,
+                            long evalCount, long evalDurationNanos, long loadDurationNanos, long totalDurationNanos) {
+        this.response = response;
+        this.context = context;
+        this.promptEvalCount = promptEvalCount;
+        this.promptEvalDurationNanos = promptEvalDurationNanos;
+        this.evalCount = evalCount;
+        this.evalDurationNanos = evalDurationNanos;
+        this.loadDurationNanos = loadDurationNanos;
+        this.totalDurationNanos = totalDurationNanos;
+    }
+    
+    public String getResponse() {
+        return response;
+    }
+    
+    public int[] getContext() {
+        return context;
+    }
+    
+    public long getPromptEvalCount() {
+        return promptEvalCount;
+    }
+    
+    public long getPromptEvalDurationNanos() {
+        return promptEvalDurationNanos;
+    }
+    
+    public long getEvalCount() {
+        return evalCount;
+    }
+    
+    public long getEvalDurationNanos() {
+        return evalDurationNanos;
+    }
+    
+    public long getLoadDurationNanos() {
+        return loadDurationNanos;
+    }
+    
+    public long getTotalDurationNanos() {
+        return totalDurationNanos;
+    }
+    
+    /**
+     * The same result without its context, for answers that may be served to another conversation
+     */
+    public GenerationResult withoutContext() {
+        return context == null ? this : new GenerationResult(response, null, promptEvalCount, promptEvalDurationNanos,
+                evalCount, evalDurationNanos, loadDurationNanos, totalDurationNanos);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.chatbot.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request and response bodies of the Ollama REST API used by this application.
+ * Responses are decoded straight from the network buffers into these records,
+ * so no intermediate String or JSON tree is built; fields we do not use are skipped.
+ */
+public final class OllamaApi {
+
+    private OllamaApi() {
+    }
+
+    /**
+     * Body of POST /api/generate. Null context and options are left out of the request.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record GenerateRequest(String model, String prompt, boolean stream, int[] context,
+                                  Map<String, Object> options, @JsonProperty("keep_alive") String keepAlive) {
+    }
+
+    /**
+     * A non-streaming /api/generate answer, or one chunk of a streaming one.
+     * Durations are in nanoseconds; counts and context are only set on the final chunk.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record GenerateResponse(
+            String response,
+            boolean done,
+            int[] context,
+            @JsonProperty("prompt_eval_count") long promptEvalCount,
+            @JsonProperty("prompt_eval_duration") long promptEvalDuration,
+            @JsonProperty("eval_count") long evalCount,
+            @JsonProperty("eval_duration") long evalDuration,
+            @JsonProperty("load_duration") long loadDuration,
+            @JsonProperty("total_duration") long totalDuration,
+            String error) {
+
+        public GenerationResult toResult() {
+            return new GenerationResult(response != null ? response : "",
+                    context != null && context.length > 0 ? context : null,
+                    promptEvalCount, promptEvalDuration, evalCount, evalDuration, loadDuration, totalDuration);
+        }
+    }
+
+    /**
+     * Body of POST /api/chat. Tools are offered to the model, which may answer with tool calls instead of text.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ChatRequest(String model, List<Message> messages, List<Tool> tools, boolean stream,
+                              Map<String, Object> options, @JsonProperty("keep_alive") String keepAlive) {
+
+        public ChatRequest withKeepAlive(String keepAlive) {
+            return new ChatRequest(model, messages, tools, stream, options, keepAlive);
+        }
+    }
+
+    /**
+     * One message of a chat; tool results are sent back with role "tool"
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Message(String role, String content, @JsonProperty("tool_calls") List<ToolCall> toolCalls,
+                          @JsonProperty("tool_name") String toolName) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ToolCall(ToolCallFunction function) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ToolCallFunction(String name, Map<String, Object> arguments) {
+    }
+
+    /**
+     * A function the model may call, described by a JSON schema of its parameters
+     */
+    public record Tool(String type, ToolFunction function) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ToolFunction(String name, String description, JsonNode parameters) {
+    }
+
+    /**
+     * A non-streaming /api/chat answer; durations are in nanoseconds
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ChatResponse(
+            Message message,
+            boolean done,
+            @JsonProperty("prompt_eval_count") long promptEvalCount,
+            @JsonProperty("prompt_eval_duration") long promptEvalDuration,
+            @JsonProperty("eval_count") long evalCount,
+            @JsonProperty("eval_duration") long evalDuration,
+            @JsonProperty("load_duration") long loadDuration,
+            @JsonProperty("total_duration") long totalDuration,
+            String error) {
+
+        public GenerationResult toResult() {
+            return new GenerationResult(message != null && message.content() != null ? message.content() : "", null,
+                    promptEvalCount, promptEvalDuration, evalCount, evalDuration, loadDuration, totalDuration);
+        }
+    }
+
+    /**
+     * Body of POST /api/embeddings
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record EmbeddingRequest(String model, String prompt, @JsonProperty("keep_alive") String keepAlive) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record EmbeddingResponse(float[] embedding) {
+    }
+
+    /**
+     * Body of POST /api/pull. With streaming Ollama answers with one {@link PullResponse} per progress
+     * step as the download goes on, the last of which has status "success"
+     */
+    public record PullRequest(String name, boolean stream) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record PullResponse(String status, String error) {
+    }
+
+    /**
+     * Answer of GET /api/ps: the models a backend currently holds in memory
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record PsResponse(List<ModelEntry> models) {
+    }
+
+    /**
+     * Answer of GET /api/tags
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record TagsResponse(List<ModelEntry> models) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record ModelEntry(String name, String model) {
+    }
+}
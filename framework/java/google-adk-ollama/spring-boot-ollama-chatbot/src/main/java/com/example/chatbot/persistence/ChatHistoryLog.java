@@ -0,0 +1,621 @@
+package com.example.chatbot.persistence;
+
+import com.example.chatbot.config.ChatHistoryProperties;
+import com.example.chatbot.model.ChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only chat history log on segmented, memory-mapped files.
+ *
+ * <p>Each record is {@code [payload length][crc32][payload]}; a zero length marks the end of the
+ * written part of a segment. Appends only copy bytes into the mapped active segment, and a background
+ * task forces dirty segments to disk (group commit). A per-session index of record positions makes a
+ * history read touch only the records of the requested page. On startup the index is rebuilt by
+ * scanning the segments once, sequentially. Clearing a session writes a tombstone, and compaction
+ * rewrites sealed segments keeping only records still referenced by the index.
+ */
+@Component
+@ConditionalOnProperty(prefix = "chat.history.persistence", name = "enabled", havingValue = "true")
+public class ChatHistoryLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatHistoryLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final String COMPACTION_MARKER = "compaction.marker";
+
+    private static final int HEADER_BYTES = 8;
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_CLEAR = 2;
+
+    private final ChatHistoryProperties.Persistence settings;
+    private final Path directory;
+    private final int segmentSize;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Appends and reads share the read lock; compaction takes the write lock to move records
+    private final ReentrantReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final Object appendLock = new Object();
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, SessionIndex> index = new ConcurrentHashMap<>();
+    private final AtomicLong clearsSinceCompaction = new AtomicLong();
+
+    private volatile Segment active;
+    private Disposable fsyncTask;
+    private Disposable compactionTask;
+
+    @Autowired
+    public ChatHistoryLog(ChatHistoryProperties properties) {
+        this.settings = properties.getPersistence();
+        this.directory = Paths.get(settings.getDirectory());
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, settings.getSegmentSize().toBytes());
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        Files.createDirectories(directory);
+        finishInterruptedCompaction();
+
+        long started = System.nanoTime();
+        long records = 0;
+        List<Integer> ids = listSegmentIds(SEGMENT_SUFFIX);
+        for (int id : ids) {
+            Segment segment = mapSegment(segmentPath(id, SEGMENT_SUFFIX), id);
+            segments.put(id, segment);
+            records += recover(segment);
+        }
+        active = segments.isEmpty() ? createSegment(0) : segments.lastEntry().getValue();
+
+        logger.info("Recovered {} history records for {} sessions from {} segments in {} ms",
+                records, index.size(), segments.size(), (System.nanoTime() - started) / 1_000_000);
+
+        fsyncTask = Flux.interval(settings.getFsyncInterval(), Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .subscribe(tick -> flush());
+        compactionTask = Flux.interval(settings.getCompactionInterval(), Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .subscribe(tick -> compact());
+    }
+
+    @PreDestroy
+    void close() {
+        if (fsyncTask != null) {
+            fsyncTask.dispose();
+        }
+        if (compactionTask != null) {
+            compactionTask.dispose();
+        }
+        segmentsLock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            logger.error("Error closing chat history log", e);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append a message and return its sequence number within the session
+     */
+    public long append(String sessionId, ChatMessage message) {
+        byte[] record = encodeMessage(sessionId, message);
+        segmentsLock.readLock().lock();
+        try {
+            synchronized (appendLock) {
+                long position = write(record);
+                return index.computeIfAbsent(sessionId, k -> new SessionIndex()).add(position);
+            }
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read messages {@code from} (inclusive) to {@code to} (exclusive) of a session
+     */
+    public List<ChatMessage> read(String sessionId, long from, long to) {
+        SessionIndex sessionIndex = index.get(sessionId);
+        if (sessionIndex == null) {
+            return List.of();
+        }
+        segmentsLock.readLock().lock();
+        try {
+            long[] positions = sessionIndex.range(from, to);
+            List<ChatMessage> messages = new ArrayList<>(positions.length);
+            long seq = Math.max(0, from);
+            for (long position : positions) {
+                messages.add(decodeMessage(position, seq++));
+            }
+            return messages;
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of messages currently stored for a session
+     */
+    public long size(String sessionId) {
+        SessionIndex sessionIndex = index.get(sessionId);
+        return sessionIndex == null ? 0 : sessionIndex.size();
+    }
+
+    /**
+     * Drop a session. Its records stay on disk until the next compaction.
+     */
+    public void clear(String sessionId) {
+        byte[] record = encodeClear(sessionId);
+        segmentsLock.readLock().lock();
+        try {
+            synchronized (appendLock) {
+                write(record);
+                index.remove(sessionId);
+            }
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+        clearsSinceCompaction.incrementAndGet();
+    }
+
+    /**
+     * Force the active segment to disk if anything was written since the last flush
+     */
+    public void flush() {
+        segmentsLock.readLock().lock();
+        try {
+            Segment segment = active;
+            if (segment != null && segment.dirty) {
+                segment.dirty = false;
+                segment.buffer.force();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error flushing chat history log", e);
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite sealed segments without the records of cleared sessions
+     */
+    public void compact() {
+        if (clearsSinceCompaction.get() == 0) {
+            return;
+        }
+        segmentsLock.writeLock().lock();
+        try {
+            clearsSinceCompaction.set(0);
+            long started = System.nanoTime();
+
+            // Seal everything written so far so that only new appends land after the compacted range
+            if (active.writePosition > 0) {
+                roll();
+            }
+            List<Segment> sealed = new ArrayList<>(segments.headMap(active.id).values());
+            if (sealed.isEmpty()) {
+                return;
+            }
+            int firstId = sealed.get(0).id;
+            int lastId = sealed.get(sealed.size() - 1).id;
+
+            Map<SessionIndex, long[]> relocated = new IdentityHashMap<>();
+            List<Segment> output = rewriteLiveRecords(firstId, lastId, relocated);
+
+            // The output takes ids firstId onwards; recovery must keep those whether or not they were renamed yet
+            Files.writeString(directory.resolve(COMPACTION_MARKER), firstId + " " + lastId + " " + output.size());
+            for (Segment segment : sealed) {
+                segments.remove(segment.id);
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            }
+            for (Segment segment : output) {
+                Path target = segmentPath(segment.id, SEGMENT_SUFFIX);
+                Files.move(segment.path, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Segment renamed = new Segment(segment.id, target, segment.channel, segment.buffer);
+                renamed.writePosition = segment.writePosition;
+                segments.put(renamed.id, renamed);
+            }
+            Files.deleteIfExists(directory.resolve(COMPACTION_MARKER));
+            relocated.forEach(SessionIndex::replacePrefix);
+
+            logger.info("Compacted {} history segments into {} in {} ms",
+                    sealed.size(), output.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException e) {
+            logger.error("Chat history compaction failed", e);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copy the live records of the sealed range into .compact segments, session by session. Records pack
+     * differently than they were written, so the output may waste more at segment tails than the input
+     * did; the last id of the range is therefore sized to take every byte still left to copy.
+     */
+    private List<Segment> rewriteLiveRecords(int firstId, int lastId, Map<SessionIndex, long[]> relocated)
+            throws IOException {
+        Map<SessionIndex, long[]> live = new IdentityHashMap<>();
+        long liveBytes = 0;
+        for (SessionIndex sessionIndex : index.values()) {
+            long[] positions = sessionIndex.sealedPrefix(active.id);
+            for (long position : positions) {
+                liveBytes += HEADER_BYTES + segments.get(segmentOf(position)).buffer.getInt(offsetOf(position));
+            }
+            if (positions.length > 0) {
+                live.put(sessionIndex, positions);
+            }
+        }
+
+        List<Segment> output = new ArrayList<>();
+        Segment target = null;
+        long copied = 0;
+        for (Map.Entry<SessionIndex, long[]> entry : live.entrySet()) {
+            long[] positions = entry.getValue();
+            for (int i = 0; i < positions.length; i++) {
+                Segment source = segments.get(segmentOf(positions[i]));
+                int offset = offsetOf(positions[i]);
+                int length = HEADER_BYTES + source.buffer.getInt(offset);
+                if (target == null || target.remaining() < length) {
+                    int id = firstId + output.size();
+                    long size = id < lastId ? segmentSize : Math.max(segmentSize, liveBytes - copied);
+                    if (size > Integer.MAX_VALUE) {
+                        throw new IOException("Compacted history of " + (liveBytes - copied)
+                                + " bytes does not fit into one segment");
+                    }
+                    target = createCompactSegment(id, (int) size);
+                    output.add(target);
+                }
+                target.buffer.put(target.writePosition, source.buffer, offset, length);
+                positions[i] = positionOf(target.id, target.writePosition);
+                target.writePosition += length;
+                copied += length;
+            }
+            relocated.put(entry.getKey(), positions);
+        }
+        for (Segment segment : output) {
+            segment.buffer.force();
+        }
+        return output;
+    }
+
+    private long write(byte[] record) {
+        if (record.length > segmentSize) {
+            throw new IllegalArgumentException("History record of " + record.length
+                    + " bytes exceeds the segment size of " + segmentSize + " bytes");
+        }
+        if (active.remaining() < record.length) {
+            roll();
+        }
+        Segment segment = active;
+        int offset = segment.writePosition;
+        segment.buffer.put(offset, record);
+        segment.writePosition += record.length;
+        segment.dirty = true;
+        return positionOf(segment.id, offset);
+    }
+
+    private void roll() {
+        Segment previous = active;
+        previous.buffer.force();
+        previous.dirty = false;
+        try {
+            active = createSegment(previous.id + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create history segment", e);
+        }
+    }
+
+    /**
+     * Scan a segment, indexing its records, and return the number of records found
+     */
+    private long recover(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        CRC32 crc = new CRC32();
+        long records = 0;
+        int offset = 0;
+        while (offset + HEADER_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + HEADER_BYTES + length > buffer.capacity()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.slice(offset + HEADER_BYTES, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                logger.warn("Truncating history segment {} at offset {}: checksum mismatch", segment.path, offset);
+                break;
+            }
+            ByteBuffer reader = buffer.slice(offset + HEADER_BYTES, length);
+            byte type = reader.get();
+            String sessionId = readString(reader, reader.getShort());
+            if (type == TYPE_MESSAGE) {
+                index.computeIfAbsent(sessionId, k -> new SessionIndex()).add(positionOf(segment.id, offset));
+            } else if (type == TYPE_CLEAR) {
+                index.remove(sessionId);
+                clearsSinceCompaction.incrementAndGet();
+            }
+            offset += HEADER_BYTES + length;
+            records++;
+        }
+        segment.writePosition = offset;
+        return records;
+    }
+
+    private ChatMessage decodeMessage(long position, long seq) {
+        Segment segment = segments.get(segmentOf(position));
+        int offset = offsetOf(position);
+        int length = segment.buffer.getInt(offset);
+        ByteBuffer reader = segment.buffer.slice(offset + HEADER_BYTES, length);
+        reader.get(); // type
+        readString(reader, reader.getShort()); // session id
+        long timestamp = reader.getLong();
+        String role = readString(reader, reader.getShort());
+        String model = readString(reader, reader.getShort());
+        String content = readString(reader, reader.getInt());
+
+        ChatMessage message = new ChatMessage(content, role, model);
+        message.setId(Long.toString(seq));
+        message.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), zone));
+        return message;
+    }
+
+    private byte[] encodeMessage(String sessionId, ChatMessage message) {
+        byte[] session = bytes(sessionId);
+        byte[] role = bytes(message.getRole());
+        byte[] model = bytes(message.getModel());
+        byte[] content = message.getContent() != null ? bytes(message.getContent()) : new byte[0];
+        checkShortLength(session, "Session id");
+        checkShortLength(role, "Role");
+        checkShortLength(model, "Model");
+        long timestamp = message.getTimestamp() != null
+                ? message.getTimestamp().atZone(zone).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+
+        int payload = 1 + 2 + session.length + 8 + 2 + length(role) + 2 + length(model) + 4 + content.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload);
+        buffer.putInt(payload).putInt(0);
+        buffer.put(TYPE_MESSAGE);
+        buffer.putShort((short) session.length).put(session);
+        buffer.putLong(timestamp);
+        putShortString(buffer, role);
+        putShortString(buffer, model);
+        buffer.putInt(content.length).put(content);
+        return seal(buffer, payload);
+    }
+
+    private byte[] encodeClear(String sessionId) {
+        byte[] session = bytes(sessionId);
+        checkShortLength(session, "Session id");
+        int payload = 1 + 2 + session.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload);
+        buffer.putInt(payload).putInt(0);
+        buffer.put(TYPE_CLEAR);
+        buffer.putShort((short) session.length).put(session);
+        return seal(buffer, payload);
+    }
+
+    private static byte[] seal(ByteBuffer buffer, int payload) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, payload);
+        buffer.putInt(4, (int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static void putShortString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) value.length).put(value);
+        }
+    }
+
+    private static String readString(ByteBuffer reader, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        reader.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void checkShortLength(byte[] value, String field) {
+        if (value != null && value.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(field + " is too long to be stored in the history log");
+        }
+    }
+
+    private static long positionOf(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = mapSegment(segmentPath(id, SEGMENT_SUFFIX), id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment createCompactSegment(int id, int size) throws IOException {
+        Path path = segmentPath(id, COMPACT_SUFFIX);
+        Files.deleteIfExists(path);
+        return mapSegment(path, id, size);
+    }
+
+    private Segment mapSegment(Path path, int id) throws IOException {
+        return mapSegment(path, id, segmentSize);
+    }
+
+    /**
+     * Map a segment file of at least {@code minSize} bytes; a compacted segment may be larger than the segment size
+     */
+    private Segment mapSegment(Path path, int id, int minSize) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), minSize);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new Segment(id, path, channel, buffer);
+    }
+
+    private Path segmentPath(int id, String suffix) {
+        return directory.resolve(String.format("%010d%s", id, suffix));
+    }
+
+    private List<Integer> listSegmentIds(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(suffix))
+                    .map(name -> Integer.parseInt(name.substring(0, name.length() - suffix.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * A crash during compaction leaves either unused .compact files (marker absent)
+     * or a complete compacted range that still has to replace the old segments (marker present).
+     * In the latter case the output ids firstId..firstId+count-1 hold compacted records, either still
+     * as .compact files or already renamed to .log; only the other ids of the range are old segments.
+     */
+    private void finishInterruptedCompaction() throws IOException {
+        Path marker = directory.resolve(COMPACTION_MARKER);
+        List<Integer> compacted = listSegmentIds(COMPACT_SUFFIX);
+        if (Files.exists(marker)) {
+            String[] range = Files.readString(marker).trim().split(" ");
+            int firstId = Integer.parseInt(range[0]);
+            int lastId = Integer.parseInt(range[1]);
+            int outputCount = Integer.parseInt(range[2]);
+            for (int id = firstId + outputCount; id <= lastId; id++) {
+                Files.deleteIfExists(segmentPath(id, SEGMENT_SUFFIX));
+            }
+            for (int id : compacted) {
+                Files.move(segmentPath(id, COMPACT_SUFFIX), segmentPath(id, SEGMENT_SUFFIX),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.delete(marker);
+            logger.info("Completed interrupted history compaction of segments {}..{}", firstId, lastId);
+        } else {
+            for (int id : compacted) {
+                Files.deleteIfExists(segmentPath(id, COMPACT_SUFFIX));
+            }
+        }
+    }
+
+    /**
+     * One mapped segment file. The buffer itself is never repositioned; all access is absolute.
+     */
+    private static final class Segment {
+
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private volatile boolean dirty;
+
+        Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        int remaining() {
+            return buffer.capacity() - writePosition;
+        }
+    }
+
+    /**
+     * Record positions of one session, in sequence order
+     */
+    private static final class SessionIndex {
+
+        private long[] positions = new long[8];
+        private int size;
+
+        synchronized long add(long position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size] = position;
+            return size++;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long[] range(long from, long to) {
+            int start = (int) Math.max(0, Math.min(from, size));
+            int end = (int) Math.max(start, Math.min(to, size));
+            return Arrays.copyOfRange(positions, start, end);
+        }
+
+        /**
+         * Positions that live in segments older than {@code activeId}; they always form a prefix
+         */
+        synchronized long[] sealedPrefix(int activeId) {
+            int end = 0;
+            while (end < size && segmentOf(positions[end]) < activeId) {
+                end++;
+            }
+            return Arrays.copyOf(positions, end);
+        }
+
+        synchronized void replacePrefix(long[] relocated) {
+            System.arraycopy(relocated, 0, positions, 0, relocated.length);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.chatbot.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a model's wait queue is full or a queued request waited too long for its turn.
+ * Carries the time after which the client may reasonably try again.
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final String model;
+    private final Duration retryAfter;
+
+    public AdmissionRejectedException(String model, Duration retryAfter, String reason) {
+        super("Model " + model + " is busy: " + reason);
+        this.model = model;
+        this.retryAfter = retryAfter;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
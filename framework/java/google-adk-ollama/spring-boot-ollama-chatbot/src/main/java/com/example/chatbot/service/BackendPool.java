@@ -0,0 +1,274 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The Ollama servers generation requests are spread over.
+ *
+ * <p>A request goes to the backend with the fewest outstanding requests among the healthy ones that
+ * already hold the model; if none does, the least loaded healthy backend pulls it first. A session
+ * sticks to the backend that served its previous turn while that backend stays healthy, so Ollama can
+ * continue from the KV cache it still holds for the session.
+ *
+ * <p>Backends are probed in the background and taken out of rotation after repeated failures,
+ * and put back once they answer again. Connection errors on real requests count as failures too.
+ */
+@Component
+public class BackendPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackendPool.class);
+
+    private final List<OllamaBackend> backends;
+    private final ModelRegistry modelRegistry;
+    private final OllamaProperties.Routing settings;
+    private final Duration inventoryRefreshInterval;
+    private final Set<String> pullModels;
+    private final ConcurrentHashMap<String, Affinity> affinities = new ConcurrentHashMap<>();
+
+    private Disposable healthChecks;
+    private Disposable inventoryRefresh;
+
+    @Autowired
+    public BackendPool(WebClient ollamaWebClient, ModelRegistry modelRegistry, OllamaProperties ollamaProperties) {
+        this.modelRegistry = modelRegistry;
+        this.settings = ollamaProperties.getRouting();
+        this.inventoryRefreshInterval = ollamaProperties.getModelCache().getRefreshInterval();
+        this.pullModels = ollamaProperties.getPullModels().stream()
+                .filter(model -> model != null && !model.isBlank())
+                .map(ModelRegistry::normalize)
+                .collect(Collectors.toUnmodifiableSet());
+
+        Set<String> urls = new LinkedHashSet<>(ollamaProperties.getBackends());
+        if (urls.isEmpty()) {
+            urls.add(ollamaProperties.getBaseUrl());
+        }
+        List<OllamaBackend> configured = new ArrayList<>();
+        for (String url : urls) {
+            // Every backend shares the connector, and so the connection pool, of the configured WebClient
+            configured.add(new OllamaBackend(url, ollamaWebClient.mutate().baseUrl(url).build()));
+        }
+        this.backends = List.copyOf(configured);
+        logger.info("Routing Ollama requests over {} backend(s): {}", backends.size(), backends);
+    }
+
+    @PostConstruct
+    void startBackgroundTasks() {
+        healthChecks = Flux.interval(Duration.ZERO, settings.getHealthCheckInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(backends).flatMap(this::probe).then(Mono.fromRunnable(this::expireAffinities)))
+                .subscribe();
+        inventoryRefresh = Flux.interval(inventoryRefreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Flux.fromIterable(healthyBackends())
+                        .flatMap(backend -> modelRegistry.refresh(backend).onErrorResume(error -> Mono.empty()))
+                        .then())
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stopBackgroundTasks() {
+        if (healthChecks != null) {
+            healthChecks.dispose();
+        }
+        if (inventoryRefresh != null) {
+            inventoryRefresh.dispose();
+        }
+    }
+
+    /**
+     * Route a call to a backend that holds the model, tracking it as outstanding there until it ends
+     */
+    public <T> Mono<T> execute(String model, String sessionId, Function<OllamaBackend, Mono<T>> call) {
+        return select(model, sessionId).flatMap(backend -> Mono.defer(() -> {
+            backend.begin();
+            return call.apply(backend)
+                    .doOnError(error -> onRequestError(backend, error))
+                    .doFinally(signal -> backend.end());
+        }));
+    }
+
+    /**
+     * Route a streaming call to a backend that holds the model, tracking it as outstanding until the stream ends
+     */
+    public <T> Flux<T> executeMany(String model, String sessionId, Function<OllamaBackend, Flux<T>> call) {
+        return select(model, sessionId).flatMapMany(backend -> Flux.defer(() -> {
+            backend.begin();
+            return call.apply(backend)
+                    .doOnError(error -> onRequestError(backend, error))
+                    .doFinally(signal -> backend.end());
+        }));
+    }
+
+    /**
+     * Whether any healthy backend has the model installed
+     */
+    public Mono<Boolean> isAvailable(String model) {
+        return Flux.fromIterable(healthyBackends())
+                .concatMap(backend -> modelRegistry.isAvailable(backend, model))
+                .any(Boolean::booleanValue);
+    }
+
+    /**
+     * Probe every backend now; true if at least one of them answers
+     */
+    public Mono<Boolean> isAnyBackendUp() {
+        return Flux.fromIterable(backends)
+                .flatMap(this::probe)
+                .any(Boolean::booleanValue);
+    }
+
+    public List<OllamaBackend> getBackends() {
+        return backends;
+    }
+
+    public List<OllamaBackend> healthyBackends() {
+        return backends.stream().filter(OllamaBackend::isHealthy).toList();
+    }
+
+    /**
+     * Health, load and model inventory of every backend
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (OllamaBackend backend : backends) {
+            Map<String, Object> backendStats = backend.stats();
+            backendStats.put("pinnedSessions", affinities.values().stream()
+                    .filter(affinity -> affinity.backend == backend)
+                    .count());
+            stats.add(backendStats);
+        }
+        return stats;
+    }
+
+    private Mono<OllamaBackend> select(String model, String sessionId) {
+        return Mono.defer(() -> {
+            List<OllamaBackend> healthy = healthyBackends();
+            if (healthy.isEmpty()) {
+                return Mono.error(new OllamaUnavailableException("No healthy Ollama backend is available",
+                        settings.getHealthCheckInterval()));
+            }
+
+            Affinity affinity = sessionId != null && settings.isSessionAffinity() ? affinities.get(sessionId) : null;
+            if (affinity != null && affinity.backend.isHealthy() && modelRegistry.isKnownOn(affinity.backend, model)) {
+                affinity.touch();
+                return Mono.just(affinity.backend);
+            }
+
+            return Flux.fromIterable(healthy)
+                    .filterWhen(backend -> modelRegistry.isAvailable(backend, model))
+                    .collectList()
+                    .flatMap(holders -> {
+                        if (!holders.isEmpty()) {
+                            return Mono.just(leastOutstanding(holders));
+                        }
+                        if (!pullModels.contains(ModelRegistry.normalize(model))) {
+                            // Rejected before anything is tracked for the model, so made-up names leave no state behind
+                            return Mono.error(new UnknownModelException(model));
+                        }
+                        // No backend has the model yet: install it where there is most room
+                        OllamaBackend target = leastOutstanding(healthy);
+                        return modelRegistry.ensureAvailable(target, model).thenReturn(target);
+                    })
+                    .doOnNext(backend -> pin(sessionId, backend));
+        });
+    }
+
+    /**
+     * The backend with the fewest outstanding requests, ties broken at random so idle backends share the load
+     */
+    private static OllamaBackend leastOutstanding(List<OllamaBackend> candidates) {
+        int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+        OllamaBackend best = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            OllamaBackend candidate = candidates.get((offset + i) % candidates.size());
+            if (best == null || candidate.outstanding() < best.outstanding()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    private void pin(String sessionId, OllamaBackend backend) {
+        if (sessionId != null && settings.isSessionAffinity()) {
+            affinities.put(sessionId, new Affinity(backend));
+        }
+    }
+
+    private Mono<Boolean> probe(OllamaBackend backend) {
+        return backend.webClient()
+                .get()
+                .uri("/api/version")
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(settings.getHealthCheckTimeout())
+                .map(response -> {
+                    if (backend.recordSuccess(settings.getHealthyThreshold())) {
+                        logger.info("Ollama backend {} recovered, returning it to rotation", backend);
+                        // Its models may have changed while it was away
+                        modelRegistry.refresh(backend).subscribe(fresh -> { }, error -> { });
+                    }
+                    return true;
+                })
+                .onErrorResume(error -> {
+                    markFailed(backend, error);
+                    return Mono.just(false);
+                });
+    }
+
+    private void onRequestError(OllamaBackend backend, Throwable error) {
+        // Only connection failures say something about the backend itself
+        if (error instanceof WebClientRequestException) {
+            markFailed(backend, error);
+        }
+    }
+
+    private void markFailed(OllamaBackend backend, Throwable error) {
+        if (backend.recordFailure(settings.getUnhealthyThreshold())) {
+            logger.warn("Ollama backend {} is unhealthy, taking it out of rotation: {}", backend, error.getMessage());
+        }
+    }
+
+    private void expireAffinities() {
+        long cutoff = System.currentTimeMillis() - settings.getAffinityTtl().toMillis();
+        affinities.values().removeIf(affinity -> affinity.lastUsedMillis < cutoff);
+    }
+
+    /**
+     * The backend a session was last served by
+     */
+    private static final class Affinity {
+
+        private final OllamaBackend backend;
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+
+        Affinity(OllamaBackend backend) {
+            this.backend = backend;
+        }
+
+        void touch() {
+            lastUsedMillis = System.currentTimeMillis();
+        }
+    }
+}
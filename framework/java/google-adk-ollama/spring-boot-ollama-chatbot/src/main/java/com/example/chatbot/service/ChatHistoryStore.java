@@ -0,0 +1,429 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.ChatHistoryProperties;
+import com.example.chatbot.dto.HistoryPage;
+import com.example.chatbot.model.ChatMessage;
+import com.example.chatbot.persistence.ChatHistoryLog;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bounded in-memory chat history, one ring buffer per session.
+ * Appends lock only the session they touch, each session is capped by message count
+ * and by an estimated token budget, and sessions that sit idle are evicted.
+ *
+ * <p>When the {@link ChatHistoryLog} is enabled every message is also appended to disk. Paged reads
+ * are then served from the log, so they cover the full history, and an evicted or restarted
+ * session is reloaded from the tail of the log on first access.
+ */
+@Component
+public class ChatHistoryStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatHistoryStore.class);
+
+    private static final int INITIAL_CAPACITY = 16;
+    // Far more than the roles and models in use; bounds the pool when clients send arbitrary model names
+    private static final int MAX_INTERNED = 1024;
+
+    private final ChatHistoryProperties properties;
+    private final ChatHistoryLog log;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Cache<String, String> internPool = Caffeine.newBuilder().maximumSize(MAX_INTERNED).build();
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private Disposable idleEviction;
+
+    @Autowired
+    public ChatHistoryStore(ChatHistoryProperties properties, ObjectProvider<ChatHistoryLog> log) {
+        this.properties = properties;
+        this.log = log.getIfAvailable();
+    }
+
+    @PostConstruct
+    void startIdleEviction() {
+        idleEviction = Flux.interval(properties.getEvictionInterval())
+                .onBackpressureDrop()
+                .subscribe(tick -> evictIdleSessions());
+    }
+
+    @PreDestroy
+    void stopIdleEviction() {
+        if (idleEviction != null) {
+            idleEviction.dispose();
+        }
+    }
+
+    /**
+     * Append a message to a session, dropping its oldest messages once the caps are reached
+     */
+    public void append(String sessionId, ChatMessage message) {
+        appendAll(sessionId, message);
+    }
+
+    /**
+     * Append a user message and its answer as one step, so no other turn of the session lands between them
+     */
+    public void appendTurn(String sessionId, ChatMessage userMessage, ChatMessage assistantMessage) {
+        appendAll(sessionId, userMessage, assistantMessage);
+    }
+
+    private void appendAll(String sessionId, ChatMessage... messages) {
+        while (true) {
+            Session session = session(sessionId);
+            synchronized (session) {
+                // The session may have been evicted between lookup and lock; retry with a fresh one
+                if (!session.closed) {
+                    for (ChatMessage message : messages) {
+                        if (log != null) {
+                            log.append(sessionId, message);
+                        }
+                        long timestamp = message.getTimestamp() != null
+                                ? message.getTimestamp().atZone(zone).toInstant().toEpochMilli()
+                                : System.currentTimeMillis();
+                        session.append(message.getContent() != null ? message.getContent() : "",
+                                intern(message.getRole()), intern(message.getModel()), timestamp,
+                                properties.getMaxMessages(), properties.getMaxTokens());
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the messages that follow {@code cursor} (exclusive), oldest first.
+     * A null cursor starts at the oldest message still retained.
+     */
+    public HistoryPage page(String sessionId, Long cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        if (log != null) {
+            long total = log.size(sessionId);
+            long from = cursor == null ? 0 : Math.max(0, cursor + 1);
+            long end = Math.min(total, from + pageSize);
+            List<ChatMessage> messages = log.read(sessionId, from, end);
+            Long nextCursor = messages.isEmpty() ? cursor : Long.valueOf(from + messages.size() - 1);
+            return new HistoryPage(messages, nextCursor, end < total);
+        }
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return new HistoryPage(List.of(), null, false);
+        }
+        synchronized (session) {
+            session.touch();
+            long from = cursor == null ? session.firstSeq : Math.max(session.firstSeq, cursor + 1);
+            long end = Math.min(session.nextSeq(), from + pageSize);
+            List<ChatMessage> messages = session.read(from, end, zone);
+            boolean hasMore = end < session.nextSeq();
+            Long nextCursor = messages.isEmpty() ? cursor : Long.valueOf(end - 1);
+            return new HistoryPage(messages, nextCursor, hasMore);
+        }
+    }
+
+    /**
+     * Read the most recent {@code limit} messages of a session, oldest first
+     */
+    public List<ChatMessage> recent(String sessionId, Integer limit) {
+        int pageSize = pageSize(limit);
+        Session session = log != null ? session(sessionId) : sessions.get(sessionId);
+        if (session == null) {
+            return List.of();
+        }
+        synchronized (session) {
+            session.touch();
+            long end = session.nextSeq();
+            long from = Math.max(session.firstSeq, end - pageSize);
+            return session.read(from, end, zone);
+        }
+    }
+
+    /**
+     * The Ollama context of the session's last turn, or null if there is none for this model
+     */
+    public int[] getContext(String sessionId, String model) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        synchronized (session) {
+            if (session.context != null && !model.equals(session.contextModel)) {
+                // A different model cannot continue from this KV state
+                session.context = null;
+                session.contextModel = null;
+            }
+            return session.context;
+        }
+    }
+
+    /**
+     * Remember the context returned by the session's latest turn
+     */
+    public void updateContext(String sessionId, String model, int[] context) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        synchronized (session) {
+            session.context = context;
+            session.contextModel = context != null ? intern(model) : null;
+        }
+    }
+
+    /**
+     * The summary of the session's older turns, or null if it has not been summarized
+     */
+    public Summary getSummary(String sessionId) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+        synchronized (session) {
+            return session.summary;
+        }
+    }
+
+    /**
+     * Store a summary of the session's turns up to {@code summary.throughSeq()}. The context is dropped
+     * as well if it is still {@code replacedContext}, so the next turn starts from the summary; if a
+     * newer turn replaced it meanwhile, it is kept and false returned.
+     */
+    public boolean applySummary(String sessionId, Summary summary, int[] replacedContext) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return false;
+        }
+        synchronized (session) {
+            session.summary = summary;
+            if (session.context != replacedContext) {
+                return false;
+            }
+            session.context = null;
+            session.contextModel = null;
+            return true;
+        }
+    }
+
+    /**
+     * The retained messages that follow {@code seq} (exclusive), oldest first
+     */
+    public List<ChatMessage> messagesAfter(String sessionId, long seq) {
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            return List.of();
+        }
+        synchronized (session) {
+            return session.read(Math.max(session.firstSeq, seq + 1), session.nextSeq(), zone);
+        }
+    }
+
+    /**
+     * Drop every message of a session
+     */
+    public void clear(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session != null) {
+            synchronized (session) {
+                session.closed = true;
+                if (log != null) {
+                    log.clear(sessionId);
+                }
+            }
+        } else if (log != null) {
+            log.clear(sessionId);
+        }
+    }
+
+    /**
+     * Whether messages are also kept in the on-disk log, so that reads and clears may touch the disk
+     */
+    public boolean isPersistent() {
+        return log != null;
+    }
+
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - properties.getIdleTimeout().toMillis();
+        int evicted = 0;
+        for (var entry : sessions.entrySet()) {
+            Session session = entry.getValue();
+            if (session.lastAccessMillis >= cutoff) {
+                continue;
+            }
+            synchronized (session) {
+                if (!session.closed && session.lastAccessMillis < cutoff) {
+                    session.closed = true;
+                    sessions.remove(entry.getKey(), session);
+                    evicted++;
+                }
+            }
+        }
+        if (evicted > 0) {
+            logger.info("Evicted {} idle chat sessions, {} remaining", evicted, sessions.size());
+        }
+    }
+
+    private Session session(String sessionId) {
+        return sessions.computeIfAbsent(sessionId, this::loadSession);
+    }
+
+    /**
+     * Start a session, seeding it with the tail of the persisted history if there is one
+     */
+    private Session loadSession(String sessionId) {
+        Session session = new Session();
+        if (log == null) {
+            return session;
+        }
+        long total = log.size(sessionId);
+        long from = Math.max(0, total - properties.getMaxMessages());
+        session.firstSeq = from;
+        for (ChatMessage message : log.read(sessionId, from, total)) {
+            session.append(message.getContent(), intern(message.getRole()), intern(message.getModel()),
+                    message.getTimestamp().atZone(zone).toInstant().toEpochMilli(),
+                    properties.getMaxMessages(), properties.getMaxTokens());
+        }
+        return session;
+    }
+
+    private int pageSize(Integer limit) {
+        int requested = limit == null || limit <= 0 ? properties.getDefaultPageSize() : limit;
+        return Math.min(requested, properties.getMaxPageSize());
+    }
+
+    /**
+     * Roles and model names repeat on every message; keep one shared instance of each of the most used.
+     * A value evicted from the pool only costs its sessions a copy of their own.
+     */
+    private String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        return internPool.get(value, Function.identity());
+    }
+
+    /**
+     * Rough token estimate (about four characters per token) used for the per-session budget
+     */
+    static int estimateTokens(String content) {
+        return Math.max(1, (content.length() + 3) / 4);
+    }
+
+    /**
+     * Summary of a session's turns up to and including message {@code throughSeq}
+     */
+    public record Summary(String text, long throughSeq) {
+    }
+
+    /**
+     * Ring buffer of messages stored as parallel arrays. Guarded by its own monitor.
+     */
+    private static final class Session {
+
+        private String[] contents = new String[INITIAL_CAPACITY];
+        private String[] roles = new String[INITIAL_CAPACITY];
+        private String[] models = new String[INITIAL_CAPACITY];
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        private int[] tokens = new int[INITIAL_CAPACITY];
+
+        private int head;
+        private int size;
+        private long firstSeq;
+        private long totalTokens;
+        private boolean closed;
+        private int[] context;
+        private String contextModel;
+        private Summary summary;
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        void append(String content, String role, String model, long timestamp, int maxMessages, int maxTokens) {
+            int cost = estimateTokens(content);
+            while (size > 0 && (size >= maxMessages || totalTokens + cost > maxTokens)) {
+                dropOldest();
+            }
+            if (size == contents.length) {
+                grow(maxMessages);
+            }
+            int slot = (head + size) % contents.length;
+            contents[slot] = content;
+            roles[slot] = role;
+            models[slot] = model;
+            timestamps[slot] = timestamp;
+            tokens[slot] = cost;
+            size++;
+            totalTokens += cost;
+            touch();
+        }
+
+        List<ChatMessage> read(long from, long end, ZoneId zone) {
+            List<ChatMessage> result = new ArrayList<>((int) Math.max(0, end - from));
+            for (long seq = from; seq < end; seq++) {
+                int slot = (int) ((head + (seq - firstSeq)) % contents.length);
+                ChatMessage message = new ChatMessage(contents[slot], roles[slot], models[slot]);
+                message.setId(Long.toString(seq));
+                message.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[slot]), zone));
+                result.add(message);
+            }
+            return result;
+        }
+
+        long nextSeq() {
+            return firstSeq + size;
+        }
+
+        void touch() {
+            lastAccessMillis = System.currentTimeMillis();
+        }
+
+        private void dropOldest() {
+            totalTokens -= tokens[head];
+            contents[head] = null;
+            roles[head] = null;
+            models[head] = null;
+            head = (head + 1) % contents.length;
+            size--;
+            firstSeq++;
+        }
+
+        private void grow(int maxMessages) {
+            int capacity = Math.max(1, Math.min(contents.length * 2, Math.max(maxMessages, contents.length + 1)));
+            String[] newContents = new String[capacity];
+            String[] newRoles = new String[capacity];
+            String[] newModels = new String[capacity];
+            long[] newTimestamps = new long[capacity];
+            int[] newTokens = new int[capacity];
+            for (int i = 0; i < size; i++) {
+                int slot = (head + i) % contents.length;
+                newContents[i] = contents[slot];
+                newRoles[i] = roles[slot];
+                newModels[i] = models[slot];
+                newTimestamps[i] = timestamps[slot];
+                newTokens[i] = tokens[slot];
+            }
+            contents = newContents;
+            roles = newRoles;
+            models = newModels;
+            timestamps = newTimestamps;
+            tokens = newTokens;
+            head = 0;
+        }
+    }
+}
@@ -1,19 +1,27 @@
 package com.example.chatbot.service;
 
+import com.example.chatbot.agent.AgentRegistry;
+import com.example.chatbot.config.ChatAgentProperties;
+import com.example.chatbot.config.ChatBatchProperties;
 import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.dto.BatchChatResult;
 import com.example.chatbot.dto.ChatRequest;
 import com.example.chatbot.dto.ChatResponse;
+import com.example.chatbot.dto.HistoryPage;
 import com.example.chatbot.model.ChatMessage;
-import com.google.adk.agents.LlmAgent;
+import com.example.chatbot.model.GenerationResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Main chat service that integrates Google ADK with Ollama
@@ -22,15 +30,27 @@ import java.util.concurrent.ConcurrentHashMap;
 public class ChatService {
       private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
     
+    private static final String DEFAULT_SESSION_ID = "default";
+    
     private final OllamaService ollamaService;
     private final OllamaProperties ollamaProperties;
-    private final ConcurrentHashMap<String, List<ChatMessage>> chatHistory;
+    private final ChatHistoryStore chatHistory;
+    private final ChatBatchProperties batchProperties;
+    private final AgentRegistry agentRegistry;
+    private final ChatAgentProperties agentProperties;
+    private final ConversationSummarizer summarizer;
     
     @Autowired
-    public ChatService(OllamaService ollamaService, OllamaProperties ollamaProperties) {
+    public ChatService(OllamaService ollamaService, OllamaProperties ollamaProperties, ChatHistoryStore chatHistory,
+                       ChatBatchProperties batchProperties, AgentRegistry agentRegistry,
+                       ChatAgentProperties agentProperties, ConversationSummarizer summarizer) {
         this.ollamaService = ollamaService;
         this.ollamaProperties = ollamaProperties;
-        this.chatHistory = new ConcurrentHashMap<>();
+        this.chatHistory = chatHistory;
+        this.batchProperties = batchProperties;
+        this.agentRegistry = agentRegistry;
+        this.agentProperties = agentProperties;
+        this.summarizer = summarizer;
     }
       /**
      * Process a chat request and return a response
@@ -38,58 +58,139 @@ public class ChatService {
     public Mono<ChatResponse> processMessage(ChatRequest request) {
         logger.info("Processing chat request: {}", request);
         
-        String sessionId = "default"; // For simplicity, using a default session
-        String model = (request.getModel() != null && !request.getModel().trim().isEmpty()) 
-            ? request.getModel() 
-            : ollamaProperties.getModel();
+        String sessionId = resolveSessionId(request);
+        String model = resolveModel(request);
         
         logger.info("Using model: {} for request", model);
         
-        // Add user message to history
+        // Built before the message joins the history: a summarized session's prompt lists the messages since the summary
+        int[] context = agentProperties.isEnabled() ? null : contextFor(sessionId, model);
+        String prompt = agentProperties.isEnabled() ? request.getMessage()
+                : summarizer.promptFor(sessionId, request.getMessage(), context);
+        
+        // Stamped now, but it joins the history only together with its answer: a rejected or failed turn leaves no trace
         ChatMessage userMessage = ChatMessage.userMessage(request.getMessage());
-        addMessageToHistory(sessionId, userMessage);
         
-        // Generate response using Ollama
-        return ollamaService.generateResponse(request.getMessage(), model)
-                .map(response -> {
-                    // Add assistant message to history
-                    ChatMessage assistantMessage = ChatMessage.assistantMessage(response, model);
-                    addMessageToHistory(sessionId, assistantMessage);
-                    
-                    return ChatResponse.success(response, model);
-                })
-                .onErrorReturn(ChatResponse.error("Sorry, I encountered an error processing your message."));
+        long startedAt = System.nanoTime();
+        Mono<String> answer = agentProperties.isEnabled()
+                // The agent keeps the conversation in its own session and may call tools before answering
+                ? agentRegistry.chat(sessionId, model, request.getMessage())
+                        .doOnNext(response -> recordTurn(sessionId, userMessage, response, model))
+                // Generate response using Ollama, continuing from the session's previous KV context
+                : generate(sessionId, prompt, request, model, context)
+                        .map(result -> {
+                            recordTurn(sessionId, userMessage, result.getResponse(), model);
+                            chatHistory.updateContext(sessionId, model, result.getContext());
+                            summarizer.afterTurn(sessionId, context, prompt, result.getContext(), System.nanoTime() - startedAt);
+                            return result.getResponse();
+                        });
+        
+        return answer
+                .map(response -> ChatResponse.success(response, model))
+                // Rejections reach the controller, which answers 429 when the model is busy, 503 when Ollama is down
+                // and 400 for a model that is not available
+                .onErrorReturn(error -> !(error instanceof AdmissionRejectedException || error instanceof OllamaUnavailableException
+                                || error instanceof UnknownModelException),
+                        ChatResponse.error("Sorry, I encountered an error processing your message."));
     }
     
     /**
-     * Get chat history for a session
+     * Process a chat request and stream the response tokens as they are generated.
+     * The message and the complete answer are added to the history once the stream finishes.
+     * With the agent enabled the turn goes through the agent like a blocking one; the agent answers
+     * only once its tool calls are done, so the stream carries its answer as a single chunk.
      */
-    public List<ChatMessage> getChatHistory(String sessionId) {
-        return chatHistory.getOrDefault(sessionId, new ArrayList<>());
+    public Flux<String> streamMessage(ChatRequest request) {
+        logger.info("Processing streaming chat request: {}", request);
+        
+        String sessionId = resolveSessionId(request);
+        String model = resolveModel(request);
+        ChatMessage userMessage = ChatMessage.userMessage(request.getMessage());
+        
+        if (agentProperties.isEnabled()) {
+            return agentRegistry.chat(sessionId, model, request.getMessage())
+                    .doOnNext(response -> recordTurn(sessionId, userMessage, response, model))
+                    .flux();
+        }
+        
+        int[] context = contextFor(sessionId, model);
+        String prompt = summarizer.promptFor(sessionId, request.getMessage(), context);
+        
+        return Flux.defer(() -> {
+            StringBuilder completion = new StringBuilder();
+            AtomicReference<int[]> returnedContext = new AtomicReference<>();
+            long startedAt = System.nanoTime();
+            return ollamaService.generateResponseStream(sessionId, prompt, model, context, request.getOptions(),
+                            newContext -> {
+                                chatHistory.updateContext(sessionId, model, newContext);
+                                returnedContext.set(newContext);
+                            })
+                    .doOnNext(completion::append)
+                    .doOnComplete(() -> {
+                        recordTurn(sessionId, userMessage, completion.toString(), model);
+                        summarizer.afterTurn(sessionId, context, prompt, returnedContext.get(), System.nanoTime() - startedAt);
+                    });
+        });
     }
     
     /**
-     * Clear chat history for a session
+     * Answer a batch of independent requests, at most {@code chat.batch.concurrency} at a time.
+     * Results are emitted in completion order, each tagged with the index of its request; a failed
+     * item yields an error result instead of failing the batch. Batch items neither read nor write
+     * chat history, so they can share cached and in-flight generations with each other.
      */
-    public void clearChatHistory(String sessionId) {
-        chatHistory.remove(sessionId);
-        logger.info("Cleared chat history for session: {}", sessionId);
+    public Flux<BatchChatResult> processBatch(List<ChatRequest> requests) {
+        logger.info("Processing batch of {} chat requests", requests.size());
+        
+        return Flux.range(0, requests.size())
+                .flatMap(index -> processBatchItem(requests.get(index))
+                        .map(response -> new BatchChatResult(index, response)),
+                        Math.max(1, batchProperties.getConcurrency()));
     }
-      /**
-     * Create an ADK agent (for future enhancements)
-     */
-    public LlmAgent createAgent(String name, String model) {
-        try {
-            return LlmAgent.builder()
-                    .name(name)
-                    .description("A helpful chatbot assistant")
-                    .model(model)
-                    .instruction("You are a helpful assistant. Answer questions clearly and concisely.")
-                    .build();
-        } catch (Exception e) {
-            logger.error("Error creating ADK agent", e);
-            return null;
+    
+    private Mono<ChatResponse> processBatchItem(ChatRequest request) {
+        if (request == null || request.getMessage() == null || request.getMessage().isBlank()) {
+            return Mono.just(ChatResponse.error("Message cannot be empty"));
         }
+        String model = resolveModel(request);
+        return ollamaService.generate(null, request.getMessage(), model, null, request.getOptions())
+                .map(result -> ChatResponse.success(result.getResponse(), model))
+                .onErrorResume(error -> {
+                    logger.warn("Batch item failed with model {}: {}", model, error.getMessage());
+                    return Mono.just(ChatResponse.error(error instanceof AdmissionRejectedException
+                            ? "The model is busy, please try again shortly."
+                            : error instanceof OllamaUnavailableException
+                            ? "The language model is unavailable, please try again shortly."
+                            : error instanceof UnknownModelException
+                            ? "Model " + model + " is not available."
+                            : "Sorry, I encountered an error processing your message."));
+                });
+    }
+    
+    /**
+     * Get the most recent page of chat history for a session
+     */
+    public Mono<List<ChatMessage>> getChatHistory(String sessionId) {
+        return onHistory(() -> chatHistory.recent(sessionId, null));
+    }
+    
+    /**
+     * Get one page of chat history for a session, starting after the given cursor
+     */
+    public Mono<HistoryPage> getChatHistoryPage(String sessionId, Long cursor, Integer limit) {
+        return onHistory(() -> chatHistory.page(sessionId, cursor, limit));
+    }
+    
+    /**
+     * Clear chat history for a session
+     */
+    public Mono<Void> clearChatHistory(String sessionId) {
+        return onHistory(() -> {
+            chatHistory.clear(sessionId);
+            agentRegistry.clearSession(sessionId);
+            logger.info("Cleared chat history for session: {}", sessionId);
+            return true;
+        }).then();
     }
     
     /**
@@ -106,7 +207,125 @@ public class ChatService {
         return ollamaService.getAvailableModels();
     }
     
-    private void addMessageToHistory(String sessionId, ChatMessage message) {
-        chatHistory.computeIfAbsent(sessionId, k -> new ArrayList<>()).add(message);
+    /**
+     * Get model availability cache counters
+     */
+    public Map<String, Long> getModelCacheStats() {
+        return ollamaService.getModelCacheStats();
+    }
+    
+    /**
+     * Get request coalescing counters
+     */
+    public Map<String, Object> getCoalescingStats() {
+        return ollamaService.getCoalescingStats();
+    }
+    
+    /**
+     * Get response cache counters
+     */
+    public Map<String, Object> getResponseCacheStats() {
+        return ollamaService.getResponseCacheStats();
+    }
+    
+    /**
+     * Get semantic cache counters
+     */
+    public Map<String, Object> getSemanticCacheStats() {
+        return ollamaService.getSemanticCacheStats();
+    }
+    
+    /**
+     * Get per-model admission control counters
+     */
+    public Map<String, Object> getAdmissionStats() {
+        return ollamaService.getAdmissionStats();
+    }
+    
+    /**
+     * Get the number of built agents and agent sessions, and the agents' tools
+     */
+    public Map<String, Object> getAgentStats() {
+        return agentRegistry.getStats();
+    }
+    
+    /**
+     * Get the load state of every model in use
+     */
+    public Map<String, Object> getModelStates() {
+        return ollamaService.getModelStates();
+    }
+    
+    /**
+     * Get the load state of every model in use, by model name
+     */
+    public Map<String, ModelLifecycleManager.LoadState> getModelLoadStates() {
+        return ollamaService.getModelLoadStates();
+    }
+    
+    /**
+     * Get summarization counters and the input tokens and latency of turns before and after summarization
+     */
+    public Map<String, Object> getSummarizationStats() {
+        return summarizer.getStats();
+    }
+    
+    /**
+     * Get the state and counters of the Ollama circuit breaker
+     */
+    public Map<String, Object> getCircuitBreakerStats() {
+        return ollamaService.getCircuitBreakerStats();
+    }
+    
+    public OllamaCircuitBreaker.State getCircuitBreakerState() {
+        return ollamaService.getCircuitBreakerState();
+    }
+    
+    /**
+     * Get health and load of every Ollama backend
+     */
+    public List<Map<String, Object>> getBackendStats() {
+        return ollamaService.getBackendStats();
+    }
+    
+    /**
+     * A summarized session's prompt carries its summary and recent transcript, which must never be
+     * served to another session from the caches or a shared request; only the bare message may be.
+     * Streaming needs no such choice, as streams are never cached or shared.
+     */
+    private Mono<GenerationResult> generate(String sessionId, String prompt, ChatRequest request, String model,
+                                            int[] context) {
+        return prompt.equals(request.getMessage())
+                ? ollamaService.generate(sessionId, prompt, model, context, request.getOptions())
+                : ollamaService.generateUncached(sessionId, prompt, model, request.getOptions());
+    }
+    
+    private int[] contextFor(String sessionId, String model) {
+        return ollamaProperties.isContextReuse() ? chatHistory.getContext(sessionId, model) : null;
+    }
+    
+    private String resolveSessionId(ChatRequest request) {
+        return (request.getSessionId() != null && !request.getSessionId().trim().isEmpty())
+            ? request.getSessionId().trim()
+            : DEFAULT_SESSION_ID;
+    }
+    
+    private String resolveModel(ChatRequest request) {
+        return (request.getModel() != null && !request.getModel().trim().isEmpty()) 
+            ? request.getModel() 
+            : ollamaProperties.getModel();
+    }
+    
+    /**
+     * Run a history read or clear. With the on-disk log it may block on the disk, so it is moved
+     * off the calling thread, which on the reactive runtime is a Netty event loop.
+     */
+    private <T> Mono<T> onHistory(Callable<T> operation) {
+        Mono<T> result = Mono.fromCallable(operation);
+        return chatHistory.isPersistent() ? result.subscribeOn(Schedulers.boundedElastic()) : result;
+    }
+    
+    private void recordTurn(String sessionId, ChatMessage userMessage, String answer, String model) {
+        chatHistory.appendTurn(sessionId, userMessage, ChatMessage.assistantMessage(answer, model));
     }
 }
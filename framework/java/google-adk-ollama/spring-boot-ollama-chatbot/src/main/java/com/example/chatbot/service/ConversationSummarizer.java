@@ -0,0 +1,232 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.ChatHistoryProperties;
+import com.example.chatbot.model.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the prompt of long conversations small by summarizing their older turns in the background.
+ *
+ * <p>Each turn continues from the context Ollama returned for the previous one, which holds the whole
+ * conversation and grows with every turn. Once it exceeds {@code chat.history.summarization.context-budget}
+ * tokens, the turns before the last {@code keep-recent-messages} are summarized with the summarization
+ * model, after the answer has been returned. The session's context is then dropped, and its next turn
+ * sends the summary and the recent messages as text instead; the turns after that continue from the
+ * shorter context Ollama returns for it.
+ *
+ * <p>The context tokens every turn starts from and its latency are recorded, tagged by whether the session
+ * has been summarized, together with the context size before and after each summarization.
+ */
+@Component
+public class ConversationSummarizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSummarizer.class);
+
+    private final OllamaService ollamaService;
+    private final ChatHistoryStore chatHistory;
+    private final ChatHistoryProperties.Summarization settings;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder summarized = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder tokensBefore = new LongAdder();
+    private final LongAdder tokensAfter = new LongAdder();
+    private final TurnStats fullTurns = new TurnStats();
+    private final TurnStats summarizedTurns = new TurnStats();
+
+    @Autowired
+    public ConversationSummarizer(OllamaService ollamaService, ChatHistoryStore chatHistory,
+                                  ChatHistoryProperties historyProperties, MeterRegistry meterRegistry) {
+        this.ollamaService = ollamaService;
+        this.chatHistory = chatHistory;
+        this.settings = historyProperties.getSummarization();
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * The prompt for a session's next turn: the message alone when the turn continues from a context,
+     * otherwise, if the session has been summarized, the summary and the messages since, then the message.
+     * Must be called before the message is added to the history.
+     */
+    public String promptFor(String sessionId, String message, int[] context) {
+        if (!settings.isEnabled() || context != null) {
+            return message;
+        }
+        ChatHistoryStore.Summary summary = chatHistory.getSummary(sessionId);
+        if (summary == null) {
+            return message;
+        }
+        StringBuilder prompt = new StringBuilder("Summary of our conversation so far:\n")
+                .append(summary.text()).append("\n\n");
+        List<ChatMessage> recent = chatHistory.messagesAfter(sessionId, summary.throughSeq());
+        if (!recent.isEmpty()) {
+            prompt.append("Our most recent messages:\n");
+            appendTranscript(prompt, recent);
+            prompt.append('\n');
+        }
+        return prompt.append("Continue the conversation and answer my next message:\n").append(message).toString();
+    }
+
+    /**
+     * Record a finished turn and, if its context is over budget, summarize the session in the background.
+     * Called once the answer is known; an answer not yet in the history is one of the recent messages anyway.
+     *
+     * @param sentContext the context the turn continued from, or null if it sent its prompt as text
+     * @param prompt      the prompt the turn sent
+     * @param newContext  the context Ollama returned, which the next turn will continue from
+     */
+    public void afterTurn(String sessionId, int[] sentContext, String prompt, int[] newContext, long nanos) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        boolean wasSummarized = chatHistory.getSummary(sessionId) != null;
+        int inputTokens = (sentContext != null ? sentContext.length : 0) + ChatHistoryStore.estimateTokens(prompt);
+        (wasSummarized ? summarizedTurns : fullTurns).record(inputTokens, nanos);
+        DistributionSummary.builder("chat.turn.input.tokens")
+                .description("Context and prompt tokens a chat turn started from, estimated for the prompt")
+                .tag("summarized", Boolean.toString(wasSummarized))
+                .register(meterRegistry)
+                .record(inputTokens);
+        Timer.builder("chat.turn.latency")
+                .description("Time to answer a chat turn")
+                .tag("summarized", Boolean.toString(wasSummarized))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        if (newContext != null && newContext.length > settings.getContextBudget() && inProgress.add(sessionId)) {
+            summarize(sessionId, newContext);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", settings.isEnabled());
+        stats.put("summarizations", summarized.sum());
+        stats.put("failures", failed.sum());
+        stats.put("inProgress", inProgress.size());
+        stats.put("contextTokensBefore", tokensBefore.sum());
+        stats.put("promptTokensAfter", tokensAfter.sum());
+        stats.put("tokensSaved", tokensBefore.sum() - tokensAfter.sum());
+        stats.put("fullTurns", fullTurns.toMap());
+        stats.put("summarizedTurns", summarizedTurns.toMap());
+        return stats;
+    }
+
+    /**
+     * Summarize everything but the recent messages, folding in the previous summary, off the request path
+     */
+    private void summarize(String sessionId, int[] context) {
+        ChatHistoryStore.Summary previous = chatHistory.getSummary(sessionId);
+        List<ChatMessage> messages = chatHistory.messagesAfter(sessionId, previous != null ? previous.throughSeq() : -1);
+        int older = messages.size() - settings.getKeepRecentMessages();
+        if (older <= 0) {
+            inProgress.remove(sessionId);
+            return;
+        }
+        List<ChatMessage> toSummarize = messages.subList(0, older);
+        long throughSeq = Long.parseLong(toSummarize.get(older - 1).getId());
+
+        StringBuilder request = new StringBuilder("Summarize the conversation below in a few sentences, so that it "
+                + "can be continued from the summary alone. Keep names, facts, decisions and open questions; "
+                + "leave out greetings and small talk. Answer with the summary only.\n\n");
+        if (previous != null) {
+            request.append("Summary of the earlier conversation:\n").append(previous.text()).append("\n\n");
+        }
+        request.append("Conversation:\n");
+        appendTranscript(request, toSummarize);
+
+        long startedAt = System.nanoTime();
+        // Uncached: the transcript belongs to this session, and neither its summary nor another
+        // session's may be served for an identical or similar prompt
+        ollamaService.generateUncached(sessionId, request.toString(), settings.getModel(),
+                        Map.of("num_predict", settings.getMaxSummaryTokens(), "temperature", 0))
+                .doFinally(signal -> inProgress.remove(sessionId))
+                .subscribe(result -> {
+                    String text = result.getResponse().trim();
+                    if (text.isEmpty()) {
+                        failed.increment();
+                        return;
+                    }
+                    ChatHistoryStore.Summary summary = new ChatHistoryStore.Summary(text, throughSeq);
+                    boolean applied = chatHistory.applySummary(sessionId, summary, context);
+                    int after = ChatHistoryStore.estimateTokens(promptFor(sessionId, "", null));
+                    record("success", startedAt);
+                    if (applied) {
+                        summarized.increment();
+                        tokensBefore.add(context.length);
+                        tokensAfter.add(after);
+                        Counter.builder("chat.summarization.tokens.saved")
+                                .description("Context tokens taken off the next turn of summarized sessions")
+                                .register(meterRegistry)
+                                .increment(Math.max(0, context.length - after));
+                    }
+                    logger.info("Summarized {} messages of session {} with {}: context of {} tokens replaced by a "
+                                    + "prompt of about {} tokens{}", older, sessionId, settings.getModel(),
+                            context.length, after, applied ? "" : " from the next summarization on");
+                }, error -> {
+                    failed.increment();
+                    record("error", startedAt);
+                    logger.warn("Could not summarize session {}: {}", sessionId, error.getMessage());
+                });
+    }
+
+    private void record(String outcome, long startedAt) {
+        Timer.builder("chat.summarization.duration")
+                .description("Time to summarize the older turns of a conversation")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static void appendTranscript(StringBuilder target, List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            target.append("assistant".equals(message.getRole()) ? "Assistant: " : "User: ")
+                    .append(message.getContent()).append('\n');
+        }
+    }
+
+    /**
+     * Count, input tokens and time of the turns of one kind
+     */
+    private static final class TurnStats {
+
+        private final LongAdder turns = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void record(int tokens, long elapsedNanos) {
+            turns.increment();
+            inputTokens.add(tokens);
+            nanos.add(elapsedNanos);
+        }
+
+        Map<String, Object> toMap() {
+            long count = turns.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("turns", count);
+            stats.put("avgInputTokens", count == 0 ? 0 : inputTokens.sum() / count);
+            stats.put("avgLatencyMs", count == 0 ? 0 : nanos.sum() / count / 1_000_000);
+            return stats;
+        }
+    }
+}
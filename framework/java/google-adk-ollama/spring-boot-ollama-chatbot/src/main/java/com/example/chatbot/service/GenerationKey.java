@@ -0,0 +1,36 @@
+package com.example.chatbot.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Identity of a context-free generation: model, normalized prompt and Ollama options
+ */
+record GenerationKey(String model, String prompt, Map<String, Object> options) {
+
+    static GenerationKey of(String model, String prompt, Map<String, Object> options) {
+        return new GenerationKey(model, normalize(prompt), options == null ? Map.of() : new HashMap<>(options));
+    }
+
+    /**
+     * Sampling with a non-zero temperature is expected to vary, so only other requests may reuse an answer
+     */
+    boolean deterministic() {
+        Object temperature = options.get("temperature");
+        if (temperature == null) {
+            return true;
+        }
+        try {
+            return Double.parseDouble(temperature.toString()) == 0.0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Prompts that differ only in surrounding or repeated whitespace produce the same generation
+     */
+    static String normalize(String prompt) {
+        return prompt.strip().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Admission control in front of Ollama, one limiter per model.
+ *
+ * <p>At most a limited number of calls per model run at once; further calls wait in a bounded FIFO queue,
+ * and once that queue is full (or a call has waited longer than the queue timeout) they are rejected with an
+ * {@link AdmissionRejectedException} instead of piling up inside WebClient.
+ *
+ * <p>In adaptive mode the limit follows observed latency in the style of a gradient limiter: while latency
+ * stays near its long-term average the limit grows by about its square root, and when latency rises the
+ * limit shrinks in proportion. Server errors and timeouts cut the limit by a tenth. Only non-streaming
+ * calls are sampled, since the duration of a stream depends mostly on the length of the answer.
+ */
+@Component
+public class ModelConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelConcurrencyLimiter.class);
+
+    private static final double SMOOTHING = 0.2;
+    private static final double RTT_TOLERANCE = 1.5;
+    private static final double LONG_RTT_WINDOW = 100;
+    private static final double DROP_FACTOR = 0.9;
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+    private final OllamaProperties.Admission settings;
+    private final ConcurrentHashMap<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ModelConcurrencyLimiter(OllamaProperties ollamaProperties) {
+        this.settings = ollamaProperties.getAdmission();
+    }
+
+    /**
+     * Run {@code call} once the model has a free slot
+     */
+    public <T> Mono<T> execute(String model, Supplier<Mono<T>> call) {
+        if (!settings.isEnabled()) {
+            return Mono.defer(call);
+        }
+        return Mono.defer(() -> {
+            Limiter limiter = limiter(model);
+            return limiter.acquire().flatMap(permit -> Mono.defer(call)
+                    .doOnSuccess(value -> permit.release(Outcome.SUCCESS))
+                    .doOnError(error -> permit.release(isOverload(error) ? Outcome.DROPPED : Outcome.IGNORED))
+                    .doOnCancel(() -> permit.release(Outcome.IGNORED)));
+        });
+    }
+
+    /**
+     * Run the streaming {@code call} once the model has a free slot; the slot is held until the stream ends
+     */
+    public <T> Flux<T> executeMany(String model, Supplier<Flux<T>> call) {
+        if (!settings.isEnabled()) {
+            return Flux.defer(call);
+        }
+        return Flux.defer(() -> {
+            Limiter limiter = limiter(model);
+            return limiter.acquire().flatMapMany(permit -> Flux.defer(call)
+                    .doOnComplete(() -> permit.release(Outcome.IGNORED))
+                    .doOnError(error -> permit.release(isOverload(error) ? Outcome.DROPPED : Outcome.IGNORED))
+                    .doOnCancel(() -> permit.release(Outcome.IGNORED)));
+        });
+    }
+
+    /**
+     * Limit, in-flight, queue and rejection counters per model
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", settings.isEnabled());
+        stats.put("adaptive", settings.isAdaptive());
+        Map<String, Object> models = new LinkedHashMap<>();
+        limiters.forEach((model, limiter) -> models.put(model, limiter.stats()));
+        stats.put("models", models);
+        return stats;
+    }
+
+    private Limiter limiter(String model) {
+        return limiters.computeIfAbsent(model, Limiter::new);
+    }
+
+    /**
+     * Errors that suggest Ollama is overloaded, as opposed to a bad request or a missing model
+     */
+    private static boolean isOverload(Throwable error) {
+        return error instanceof TimeoutException
+                || error instanceof WebClientRequestException
+                || error instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError();
+    }
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    private enum State {
+        WAITING, GRANTED, CANCELLED
+    }
+
+    private final class Limiter {
+
+        private final String model;
+        private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+        // Guarded by this limiter's monitor
+        private double limit;
+        private int inFlight;
+        private double longRttNanos;
+        private double meanRttNanos;
+        private long admitted;
+        private long rejected;
+        private long timedOut;
+        private long queueWaitNanos;
+
+        Limiter(String model) {
+            this.model = model;
+            this.limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), settings.getMaxConcurrent()));
+        }
+
+        Mono<Permit> acquire() {
+            Mono<Permit> permit = Mono.create(sink -> {
+                Waiter waiter = new Waiter(sink);
+                // Registered first so a cancellation racing with the grant still hands the slot back
+                sink.onCancel(() -> cancel(waiter));
+                State state;
+                synchronized (this) {
+                    if (queue.isEmpty() && inFlight < currentLimit()) {
+                        grant(waiter);
+                    } else if (queue.size() < settings.getQueueSize()) {
+                        queue.addLast(waiter);
+                    } else {
+                        rejected++;
+                        waiter.state = State.CANCELLED;
+                    }
+                    state = waiter.state;
+                }
+                if (state == State.GRANTED) {
+                    sink.success(waiter.permit);
+                } else if (state == State.CANCELLED) {
+                    sink.error(new AdmissionRejectedException(model, retryAfter(), "wait queue is full"));
+                }
+            });
+            return permit.timeout(settings.getQueueTimeout(), Mono.defer(() -> {
+                synchronized (this) {
+                    timedOut++;
+                }
+                return Mono.error(new AdmissionRejectedException(model, retryAfter(), "timed out waiting for a free slot"));
+            }));
+        }
+
+        private void cancel(Waiter waiter) {
+            Permit granted = null;
+            synchronized (this) {
+                if (waiter.state == State.WAITING) {
+                    waiter.state = State.CANCELLED;
+                    queue.remove(waiter);
+                } else if (waiter.state == State.GRANTED) {
+                    granted = waiter.permit;
+                }
+            }
+            if (granted != null) {
+                granted.release(Outcome.IGNORED);
+            }
+        }
+
+        private void release(Permit permit, Outcome outcome) {
+            List<Waiter> granted = new ArrayList<>();
+            synchronized (this) {
+                inFlight--;
+                if (outcome == Outcome.SUCCESS) {
+                    onSample(System.nanoTime() - permit.startNanos);
+                } else if (outcome == Outcome.DROPPED && settings.isAdaptive()) {
+                    limit = Math.max(settings.getMinLimit(), limit * DROP_FACTOR);
+                }
+                while (!queue.isEmpty() && inFlight < currentLimit()) {
+                    Waiter waiter = queue.pollFirst();
+                    grant(waiter);
+                    granted.add(waiter);
+                }
+            }
+            for (Waiter waiter : granted) {
+                waiter.sink.success(waiter.permit);
+            }
+        }
+
+        private void grant(Waiter waiter) {
+            waiter.state = State.GRANTED;
+            waiter.permit = new Permit(this);
+            queueWaitNanos += waiter.permit.startNanos - waiter.enqueuedNanos;
+            inFlight++;
+            admitted++;
+        }
+
+        private void onSample(long rttNanos) {
+            if (meanRttNanos == 0) {
+                meanRttNanos = rttNanos;
+                longRttNanos = rttNanos;
+                return;
+            }
+            meanRttNanos += (rttNanos - meanRttNanos) * SMOOTHING;
+            longRttNanos += (rttNanos - longRttNanos) / LONG_RTT_WINDOW;
+            if (!settings.isAdaptive()) {
+                return;
+            }
+            // After a burst the long-term average is inflated; let it drift back so the limit can recover
+            if (longRttNanos / rttNanos > 2) {
+                longRttNanos *= 0.95;
+            }
+            // An underused limiter learns nothing about capacity from its latency
+            if (inFlight + 1 < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRttNanos / rttNanos));
+            double target = limit * gradient + Math.sqrt(limit);
+            double smoothed = limit * (1 - SMOOTHING) + target * SMOOTHING;
+            double previous = limit;
+            limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), smoothed));
+            if ((int) limit != (int) previous) {
+                logger.debug("Concurrency limit for model {} changed from {} to {}", model, (int) previous, (int) limit);
+            }
+        }
+
+        private int currentLimit() {
+            return settings.isAdaptive() ? (int) limit : settings.getMaxConcurrent();
+        }
+
+        /**
+         * Roughly how long the queue ahead of a new request takes to drain, from the mean call duration
+         */
+        private synchronized Duration retryAfter() {
+            if (meanRttNanos == 0) {
+                return Duration.ofSeconds(1);
+            }
+            double drainNanos = (queue.size() + 1) * meanRttNanos / Math.max(1, currentLimit());
+            long seconds = (long) Math.ceil(drainNanos / 1_000_000_000d);
+            return Duration.ofSeconds(Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, seconds)));
+        }
+
+        synchronized Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", currentLimit());
+            stats.put("inFlight", inFlight);
+            stats.put("queued", queue.size());
+            stats.put("admitted", admitted);
+            stats.put("rejected", rejected);
+            stats.put("timedOut", timedOut);
+            stats.put("meanLatencyMs", meanRttNanos / 1_000_000d);
+            stats.put("meanQueueWaitMs", admitted == 0 ? 0.0 : queueWaitNanos / 1_000_000d / admitted);
+            return stats;
+        }
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Permit> sink;
+        private final long enqueuedNanos = System.nanoTime();
+        private State state = State.WAITING;
+        private Permit permit;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+
+    /**
+     * One admitted call's slot. Released exactly once, however the call ends.
+     */
+    private static final class Permit {
+
+        private final Limiter limiter;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Limiter limiter) {
+            this.limiter = limiter;
+        }
+
+        void release(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(this, outcome);
+            }
+        }
+    }
+}
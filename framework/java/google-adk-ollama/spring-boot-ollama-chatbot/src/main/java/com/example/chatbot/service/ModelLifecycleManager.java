@@ -0,0 +1,318 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.model.OllamaApi;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the models that are in use loaded in Ollama and frees the memory of those that are not.
+ *
+ * <p>Models listed in {@code ollama.lifecycle.preload} are loaded on every backend that has them once the
+ * application is ready, in the background, and loaded again whenever Ollama drops them. Every request
+ * tells Ollama how long to keep its model loaded afterwards: preloaded models and models that get at
+ * least {@code hot-threshold} requests per minute get the long {@code hot-keep-alive}, the rest the short
+ * {@code cold-keep-alive}. A model that has not been asked for within {@code cold-after} is unloaded
+ * right away instead of waiting for its keep-alive to run out.
+ *
+ * <p>What each backend actually holds is read from its /api/ps on every evaluation and reported per model.
+ */
+@Component
+public class ModelLifecycleManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelLifecycleManager.class);
+
+    // Weight of the latest interval in the smoothed request rate
+    private static final double RATE_SMOOTHING = 0.3;
+
+    /**
+     * Load state of a model, over all backends
+     */
+    public enum LoadState {
+        /** Not loaded anywhere, and not known to have been */
+        NOT_LOADED,
+        /** A preload is in progress */
+        LOADING,
+        /** Held in memory by at least one backend */
+        READY,
+        /** The last preload failed */
+        FAILED,
+        /** Was loaded, and has since been unloaded by us or expired in Ollama */
+        UNLOADED
+    }
+
+    private final BackendPool backendPool;
+    private final ModelRegistry modelRegistry;
+    private final OllamaProperties.Lifecycle settings;
+    private final Set<String> pinned = new HashSet<>();
+    private final ConcurrentHashMap<String, ModelState> models = new ConcurrentHashMap<>();
+
+    private Disposable evaluation;
+
+    @Autowired
+    public ModelLifecycleManager(BackendPool backendPool, ModelRegistry modelRegistry, OllamaProperties ollamaProperties) {
+        this.backendPool = backendPool;
+        this.modelRegistry = modelRegistry;
+        this.settings = ollamaProperties.getLifecycle();
+        for (String model : settings.getPreload()) {
+            if (model != null && !model.isBlank()) {
+                pinned.add(ModelRegistry.normalize(model));
+                state(model);
+            }
+        }
+    }
+
+    /**
+     * Start preloading once the application is ready, so readiness never waits for a model to load
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void start() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Flux.fromIterable(pinned).flatMap(this::preload).subscribe();
+        evaluation = Flux.interval(settings.getEvaluationInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> evaluate().onErrorResume(error -> {
+                    logger.warn("Model lifecycle evaluation failed: {}", error.getMessage());
+                    return Mono.empty();
+                }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (evaluation != null) {
+            evaluation.dispose();
+        }
+    }
+
+    /**
+     * Count a request for the model and return the keep_alive to send with it, or null to leave Ollama's default
+     */
+    public String keepAliveFor(String model) {
+        if (!settings.isEnabled()) {
+            return null;
+        }
+        ModelState state = state(model);
+        state.requests.incrementAndGet();
+        state.lastRequestMillis = System.currentTimeMillis();
+        return keepAlive(isHot(state) ? settings.getHotKeepAlive() : settings.getColdKeepAlive());
+    }
+
+    /**
+     * Load state, backends holding the model and request rate of every model seen so far
+     */
+    public Map<String, Object> getStates() {
+        Map<String, Object> states = new TreeMap<>();
+        models.forEach((name, state) -> {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("state", state.loadState.name());
+            details.put("loadedOn", state.loadedOn);
+            details.put("pinned", pinned.contains(name));
+            details.put("hot", isHot(state));
+            details.put("requestsPerMinute", Math.round(state.ratePerMinute * 100) / 100.0);
+            if (state.lastError != null) {
+                details.put("error", state.lastError);
+            }
+            states.put(name, details);
+        });
+        return states;
+    }
+
+    /**
+     * Load state of every model seen so far
+     */
+    public Map<String, LoadState> getLoadStates() {
+        Map<String, LoadState> states = new TreeMap<>();
+        models.forEach((name, state) -> states.put(name, state.loadState));
+        return states;
+    }
+
+    private boolean isHot(ModelState state) {
+        return pinned.contains(state.name) || state.ratePerMinute >= settings.getHotThreshold();
+    }
+
+    /**
+     * Load a model on every healthy backend that has it installed, or pull and load it on one if none has
+     */
+    private Mono<Void> preload(String model) {
+        ModelState state = state(model);
+        state.loadState = LoadState.LOADING;
+        return Flux.fromIterable(backendPool.healthyBackends())
+                .filterWhen(backend -> modelRegistry.isAvailable(backend, model))
+                .collectList()
+                .flatMap(holders -> holders.isEmpty()
+                        ? backendPool.execute(model, null, backend -> load(backend, model)).then()
+                        : Flux.fromIterable(holders).flatMap(backend -> load(backend, model)).then())
+                .doOnSuccess(done -> {
+                    state.loadState = LoadState.READY;
+                    state.lastError = null;
+                })
+                .onErrorResume(error -> {
+                    logger.warn("Could not preload model {}: {}", model, error.getMessage());
+                    state.loadState = LoadState.FAILED;
+                    state.lastError = error.getMessage();
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * A generate request without a prompt makes Ollama load the model and return
+     */
+    private Mono<OllamaApi.GenerateResponse> load(OllamaBackend backend, String model) {
+        long startedAt = System.nanoTime();
+        return backend.webClient()
+                .post()
+                .uri("/api/generate")
+                .bodyValue(new OllamaApi.GenerateRequest(model, null, false, null, null,
+                        keepAlive(settings.getHotKeepAlive())))
+                .retrieve()
+                .bodyToMono(OllamaApi.GenerateResponse.class)
+                .doOnSuccess(response -> logger.info("Loaded model {} on {} in {} ms",
+                        model, backend, (System.nanoTime() - startedAt) / 1_000_000));
+    }
+
+    /**
+     * keep_alive 0 makes Ollama unload the model as soon as no request is using it
+     */
+    private Mono<Void> unload(OllamaBackend backend, String model) {
+        return backend.webClient()
+                .post()
+                .uri("/api/generate")
+                .bodyValue(new OllamaApi.GenerateRequest(model, null, false, null, null, "0s"))
+                .retrieve()
+                .toBodilessEntity()
+                .doOnSuccess(response -> logger.info("Unloaded cold model {} on {}", model, backend))
+                .doOnError(error -> logger.warn("Could not unload model {} on {}: {}", model, backend, error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Update request rates, read what each backend holds, unload cold models and reload dropped pinned ones.
+     * A model that is neither pinned, loaded nor requested within cold-after is forgotten, so only the
+     * models in recent use are tracked.
+     */
+    Mono<Void> evaluate() {
+        double minutes = settings.getEvaluationInterval().toMillis() / 60_000.0;
+        for (ModelState state : models.values()) {
+            double latest = state.requests.getAndSet(0) / minutes;
+            state.ratePerMinute = RATE_SMOOTHING * latest + (1 - RATE_SMOOTHING) * state.ratePerMinute;
+        }
+
+        List<OllamaBackend> backends = backendPool.healthyBackends();
+        return Flux.fromIterable(backends)
+                .flatMap(backend -> runningModels(backend).map(running -> Map.entry(backend, running)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .flatMap(running -> {
+                    Map<String, Set<String>> loadedOn = new HashMap<>();
+                    running.forEach((backend, names) -> names.forEach(name ->
+                            loadedOn.computeIfAbsent(name, n -> new HashSet<>()).add(backend.getName())));
+
+                    // Only models this application has used are managed; others on the host are left alone
+                    long coldBefore = System.currentTimeMillis() - settings.getColdAfter().toMillis();
+                    List<Mono<Void>> actions = new ArrayList<>();
+                    for (ModelState state : models.values()) {
+                        Set<String> holders = loadedOn.getOrDefault(state.name, Set.of());
+                        updateLoadState(state, holders);
+                        if (pinned.contains(state.name)) {
+                            if (holders.isEmpty() && state.loadState != LoadState.LOADING) {
+                                logger.info("Pinned model {} is no longer loaded, loading it again", state.name);
+                                actions.add(preload(state.name));
+                            }
+                        } else if (holders.isEmpty() && state.lastRequestMillis < coldBefore) {
+                            models.remove(state.name, state);
+                        } else if (!holders.isEmpty() && state.lastRequestMillis < coldBefore) {
+                            for (OllamaBackend backend : running.keySet()) {
+                                if (holders.contains(backend.getName())) {
+                                    actions.add(unload(backend, state.name));
+                                }
+                            }
+                            state.loadState = LoadState.UNLOADED;
+                            state.loadedOn = Set.of();
+                        }
+                    }
+                    return Mono.when(actions);
+                });
+    }
+
+    private Mono<Set<String>> runningModels(OllamaBackend backend) {
+        return backend.webClient()
+                .get()
+                .uri("/api/ps")
+                .retrieve()
+                .bodyToMono(OllamaApi.PsResponse.class)
+                .map(ps -> {
+                    Set<String> names = new HashSet<>();
+                    if (ps.models() != null) {
+                        for (OllamaApi.ModelEntry entry : ps.models()) {
+                            String name = entry.model() != null ? entry.model() : entry.name();
+                            if (name != null) {
+                                names.add(ModelRegistry.normalize(name));
+                            }
+                        }
+                    }
+                    return names;
+                })
+                .onErrorResume(error -> Mono.empty());
+    }
+
+    private static void updateLoadState(ModelState state, Set<String> holders) {
+        state.loadedOn = Set.copyOf(holders);
+        if (!holders.isEmpty()) {
+            state.loadState = LoadState.READY;
+        } else if (state.loadState == LoadState.READY) {
+            state.loadState = LoadState.UNLOADED;
+        }
+    }
+
+    private ModelState state(String model) {
+        return models.computeIfAbsent(ModelRegistry.normalize(model), ModelState::new);
+    }
+
+    /**
+     * Ollama reads keep_alive as a Go duration; a negative one keeps the model loaded until it is unloaded
+     */
+    static String keepAlive(Duration duration) {
+        return duration.isNegative() ? "-1s" : duration.toSeconds() + "s";
+    }
+
+    /**
+     * Requests, rate and load state of one model
+     */
+    private static final class ModelState {
+
+        private final String name;
+        private final AtomicLong requests = new AtomicLong();
+        private volatile long lastRequestMillis = System.currentTimeMillis();
+        private volatile double ratePerMinute;
+        private volatile LoadState loadState = LoadState.NOT_LOADED;
+        private volatile Set<String> loadedOn = Set.of();
+        private volatile String lastError;
+
+        ModelState(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.model.OllamaApi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cached view of the models installed on each Ollama backend.
+ * Each backend's /api/tags listing is refreshed in the background by {@link BackendPool} and served
+ * from memory, and concurrent pulls of the same missing model to a backend share a single upstream request.
+ */
+@Service
+public class ModelRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelRegistry.class);
+
+    private static final String DEFAULT_TAG = ":latest";
+
+    private final OllamaProperties.ModelCache settings;
+    private final Duration pullReadTimeout;
+
+    private final ConcurrentHashMap<OllamaBackend, Inventory> inventories = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final AtomicLong pulls = new AtomicLong();
+
+    @Autowired
+    public ModelRegistry(OllamaProperties ollamaProperties) {
+        this.settings = ollamaProperties.getModelCache();
+        this.pullReadTimeout = ollamaProperties.getConnection().getPullReadTimeout();
+    }
+
+    /**
+     * Check whether a model is installed on a backend, answering from the cache while it is fresh
+     */
+    public Mono<Boolean> isAvailable(OllamaBackend backend, String model) {
+        Snapshot current = inventory(backend).snapshot.get();
+        if (current != null && !current.isExpired(settings.getTtl().toNanos())) {
+            hits.incrementAndGet();
+            return Mono.just(current.contains(model));
+        }
+
+        misses.incrementAndGet();
+        return refresh(backend)
+                .map(fresh -> fresh.contains(model))
+                .onErrorResume(error -> {
+                    logger.warn("Could not check model availability for {} on {}: {}", model, backend, error.getMessage());
+                    // Fall back to the last known listing rather than failing the request
+                    return Mono.just(current != null && current.contains(model));
+                });
+    }
+
+    /**
+     * Make sure a model is installed on a backend, pulling it at most once no matter how many callers are waiting
+     */
+    public Mono<Void> ensureAvailable(OllamaBackend backend, String model) {
+        return isAvailable(backend, model)
+                .flatMap(available -> available ? Mono.<Void>empty() : pullModel(backend, model).then());
+    }
+
+    /**
+     * Pull a model from the Ollama registry onto a backend. Concurrent calls for the same model share one request.
+     * The pull streams its progress, so a download of any length keeps the connection active, and it waits
+     * up to pull-read-timeout rather than the read timeout of generations for each progress line.
+     */
+    public Mono<String> pullModel(OllamaBackend backend, String model) {
+        String key = normalize(model);
+        Inventory inventory = inventory(backend);
+        return inventory.inFlightPulls.computeIfAbsent(key, k -> {
+            logger.warn("Model {} is not available on {}, attempting to pull it", model, backend);
+            pulls.incrementAndGet();
+            return backend.webClient()
+                    .post()
+                    .uri("/api/pull")
+                    .httpRequest(request -> ((HttpClientRequest) request.getNativeRequest()).responseTimeout(pullReadTimeout))
+                    .bodyValue(new OllamaApi.PullRequest(model, true))
+                    .retrieve()
+                    .bodyToFlux(OllamaApi.PullResponse.class)
+                    .<String>handle((response, sink) -> {
+                        if (response.error() != null) {
+                            sink.error(new IllegalStateException("Could not pull " + model + ": " + response.error()));
+                        } else if (response.status() != null) {
+                            sink.next(response.status());
+                        }
+                    })
+                    .last("")
+                    .<String>handle((status, sink) -> {
+                        if ("success".equals(status)) {
+                            sink.next(status);
+                        } else {
+                            sink.error(new IllegalStateException("Pull of " + model + " ended without success: " + status));
+                        }
+                    })
+                    .doOnSuccess(status -> {
+                        logger.info("Model {} pulled successfully on {}", model, backend);
+                        markInstalled(inventory, key);
+                    })
+                    .doOnError(error -> logger.error("Error pulling model {} on {}", model, backend, error))
+                    .doFinally(signal -> inventory.inFlightPulls.remove(k))
+                    .cache();
+        });
+    }
+
+    /**
+     * Whether the last listing of a backend, fresh or not, includes the model. Never calls Ollama.
+     */
+    public boolean isKnownOn(OllamaBackend backend, String model) {
+        Snapshot current = inventory(backend).snapshot.get();
+        return current != null && current.contains(model);
+    }
+
+    /**
+     * Re-read a backend's /api/tags. Concurrent callers share one request.
+     */
+    public Mono<Snapshot> refresh(OllamaBackend backend) {
+        Inventory inventory = inventory(backend);
+        return inventory.inFlightRefresh.updateAndGet(existing -> existing != null ? existing : fetchTags(backend, inventory));
+    }
+
+    private Mono<Snapshot> fetchTags(OllamaBackend backend, Inventory inventory) {
+        return backend.webClient()
+                .get()
+                .uri("/api/tags")
+                .retrieve()
+                .bodyToMono(OllamaApi.TagsResponse.class)
+                .map(ModelRegistry::toSnapshot)
+                .doOnSuccess(fresh -> {
+                    inventory.snapshot.set(fresh);
+                    refreshes.incrementAndGet();
+                    logger.debug("Refreshed model registry of {}: {}", backend, fresh.models());
+                })
+                .doOnError(error -> refreshFailures.incrementAndGet())
+                .doFinally(signal -> inventory.inFlightRefresh.set(null))
+                .cache();
+    }
+
+    /**
+     * Hit/miss/refresh counters for the model cache
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("refreshes", refreshes.get());
+        stats.put("refreshFailures", refreshFailures.get());
+        stats.put("pulls", pulls.get());
+        return stats;
+    }
+
+    private Inventory inventory(OllamaBackend backend) {
+        return inventories.computeIfAbsent(backend, b -> new Inventory());
+    }
+
+    private void markInstalled(Inventory inventory, String model) {
+        inventory.snapshot.updateAndGet(current -> {
+            Set<String> models = new HashSet<>(current != null ? current.models() : Set.of());
+            models.add(model);
+            // Without a prior listing, keep the snapshot expired so the next lookup refreshes it
+            long fetchedAt = current != null
+                    ? current.fetchedAtNanos()
+                    : System.nanoTime() - settings.getTtl().toNanos() - 1;
+            return new Snapshot(Collections.unmodifiableSet(models), fetchedAt);
+        });
+    }
+
+    private static Snapshot toSnapshot(OllamaApi.TagsResponse tags) {
+        Set<String> models = new HashSet<>();
+        if (tags.models() != null) {
+            for (OllamaApi.ModelEntry entry : tags.models()) {
+                addName(models, entry.name());
+                addName(models, entry.model());
+            }
+        }
+        return new Snapshot(Collections.unmodifiableSet(models), System.nanoTime());
+    }
+
+    private static void addName(Set<String> models, String name) {
+        if (name != null && !name.isBlank()) {
+            models.add(normalize(name));
+        }
+    }
+
+    /**
+     * Ollama treats "llama2" and "llama2:latest" as the same model
+     */
+    static String normalize(String model) {
+        String trimmed = model.trim();
+        return trimmed.indexOf(':') >= 0 ? trimmed : trimmed + DEFAULT_TAG;
+    }
+
+    /**
+     * Latest listing and in-flight requests of one backend
+     */
+    private static final class Inventory {
+
+        private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+        private final AtomicReference<Mono<Snapshot>> inFlightRefresh = new AtomicReference<>();
+        private final ConcurrentHashMap<String, Mono<String>> inFlightPulls = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Immutable result of one /api/tags call
+     */
+    public record Snapshot(Set<String> models, long fetchedAtNanos) {
+
+        boolean contains(String model) {
+            return models.contains(normalize(model));
+        }
+
+        boolean isExpired(long ttlNanos) {
+            return System.nanoTime() - fetchedAtNanos > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.chatbot.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the load state of each model under "models" in /actuator/health.
+ * Always UP: a model that is still loading or failed to preload must not take the application out of service.
+ */
+@Component
+public class ModelsHealthIndicator implements HealthIndicator {
+
+    private final ModelLifecycleManager lifecycleManager;
+
+    @Autowired
+    public ModelsHealthIndicator(ModelLifecycleManager lifecycleManager) {
+        this.lifecycleManager = lifecycleManager;
+    }
+
+    @Override
+    public Health health() {
+        return Health.up()
+                .withDetails(lifecycleManager.getStates())
+                .build();
+    }
+}
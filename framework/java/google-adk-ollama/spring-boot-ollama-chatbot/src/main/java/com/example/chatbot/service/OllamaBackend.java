@@ -0,0 +1,101 @@
+package com.example.chatbot.service;
+
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One Ollama server requests can be routed to, with its load and health as seen by this application
+ */
+public final class OllamaBackend {
+
+    private final String name;
+    private final WebClient webClient;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    // Guarded by this backend's monitor
+    private boolean healthy = true;
+    private int consecutiveFailures;
+    private int consecutiveSuccesses;
+
+    OllamaBackend(String name, WebClient webClient) {
+        this.name = name;
+        this.webClient = webClient;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    WebClient webClient() {
+        return webClient;
+    }
+
+    /**
+     * Requests routed here that have not finished yet, including those waiting for admission
+     */
+    int outstanding() {
+        return outstanding.get();
+    }
+
+    void begin() {
+        outstanding.incrementAndGet();
+        requests.incrementAndGet();
+    }
+
+    void end() {
+        outstanding.decrementAndGet();
+    }
+
+    public synchronized boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Count a successful probe; returns true if this brought the backend back into rotation
+     */
+    synchronized boolean recordSuccess(int healthyThreshold) {
+        consecutiveFailures = 0;
+        consecutiveSuccesses++;
+        if (!healthy && consecutiveSuccesses >= healthyThreshold) {
+            healthy = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count a failed probe or connection error; returns true if this took the backend out of rotation
+     */
+    synchronized boolean recordFailure(int unhealthyThreshold) {
+        failures.incrementAndGet();
+        consecutiveSuccesses = 0;
+        consecutiveFailures++;
+        if (healthy && consecutiveFailures >= unhealthyThreshold) {
+            healthy = false;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("healthy", healthy);
+        stats.put("outstanding", outstanding.get());
+        stats.put("requests", requests.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
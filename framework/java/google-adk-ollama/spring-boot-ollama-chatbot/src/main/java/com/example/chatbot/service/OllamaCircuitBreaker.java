@@ -0,0 +1,251 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.PrematureCloseException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fails calls to Ollama at once while it is down or too slow, instead of letting each of them wait
+ * for its own timeout.
+ *
+ * <p>After {@code failure-threshold} consecutive failed calls the breaker opens and every call is
+ * rejected with {@link OllamaUnavailableException}. Once {@code open-duration} has passed it is half
+ * open: up to {@code half-open-probes} calls go through as probes; if they all succeed it closes, and
+ * if any fails it opens again. Only failures that say Ollama is unreachable or unwell count: connection
+ * errors, timeouts, dropped connections and 5xx answers. Only a call that completed counts as a success.
+ * Admission rejections, 4xx answers and cancelled calls say nothing about Ollama's health and count
+ * neither way: they do not reset the failure count, and a probe ending so only frees its slot.
+ */
+@Component
+public class OllamaCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaCircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * How a call was let through
+     */
+    private enum Permit {
+        NORMAL, PROBE
+    }
+
+    private final OllamaProperties.CircuitBreaker settings;
+
+    // Guarded by this breaker's monitor
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtMillis;
+    private int probesInFlight;
+    private int probeSuccesses;
+    private long timesOpened;
+    private long rejected;
+
+    @Autowired
+    public OllamaCircuitBreaker(OllamaProperties ollamaProperties, MeterRegistry meterRegistry) {
+        this.settings = ollamaProperties.getCircuitBreaker();
+        Gauge.builder("ollama.circuit.state", this, breaker -> breaker.getState().ordinal())
+                .description("State of the Ollama circuit breaker: 0 closed, 1 open, 2 half open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the call unless the breaker is open, recording whether it succeeded
+     */
+    public <T> Mono<T> protect(Mono<T> call) {
+        if (!settings.isEnabled()) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            Permit permit = tryAcquire();
+            if (permit == null) {
+                return Mono.error(unavailable());
+            }
+            AtomicBoolean recorded = new AtomicBoolean();
+            return call
+                    .doOnSuccess(value -> record(permit, recorded, null))
+                    .doOnError(error -> record(permit, recorded, error))
+                    .doOnCancel(() -> release(permit, recorded));
+        });
+    }
+
+    /**
+     * Run a streaming call unless the breaker is open. Its first element already shows that Ollama
+     * answers, so that is when it counts as a success, rather than when a long stream ends.
+     */
+    public <T> Flux<T> protectMany(Flux<T> call) {
+        if (!settings.isEnabled()) {
+            return call;
+        }
+        return Flux.defer(() -> {
+            Permit permit = tryAcquire();
+            if (permit == null) {
+                return Flux.error(unavailable());
+            }
+            AtomicBoolean recorded = new AtomicBoolean();
+            return call
+                    .doOnNext(value -> record(permit, recorded, null))
+                    .doOnComplete(() -> record(permit, recorded, null))
+                    .doOnError(error -> record(permit, recorded, error))
+                    .doOnCancel(() -> release(permit, recorded));
+        });
+    }
+
+    public synchronized State getState() {
+        // An open breaker whose wait is over shows as half open, as the next call will find it
+        return state == State.OPEN && openElapsed() ? State.HALF_OPEN : state;
+    }
+
+    /**
+     * Time until an open breaker lets probe calls through, zero if it is not open
+     */
+    public synchronized Duration getRetryAfter() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        long remaining = openedAtMillis + settings.getOpenDuration().toMillis() - System.currentTimeMillis();
+        return Duration.ofMillis(Math.max(0, remaining));
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", settings.isEnabled());
+        stats.put("state", getState().name());
+        stats.put("consecutiveFailures", consecutiveFailures);
+        stats.put("retryAfterSeconds", getRetryAfter().toSeconds());
+        stats.put("timesOpened", timesOpened);
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    private synchronized Permit tryAcquire() {
+        if (state == State.OPEN && openElapsed()) {
+            logger.info("Ollama circuit breaker is half open, letting {} probe call(s) through", settings.getHalfOpenProbes());
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        switch (state) {
+            case CLOSED:
+                return Permit.NORMAL;
+            case HALF_OPEN:
+                if (probesInFlight + probeSuccesses < settings.getHalfOpenProbes()) {
+                    probesInFlight++;
+                    return Permit.PROBE;
+                }
+                rejected++;
+                return null;
+            default:
+                rejected++;
+                return null;
+        }
+    }
+
+    private void record(Permit permit, AtomicBoolean recorded, Throwable error) {
+        if (recorded.compareAndSet(false, true)) {
+            if (error == null) {
+                onSuccess(permit);
+            } else if (countsAsFailure(error)) {
+                onFailure(permit, error);
+            } else {
+                onNeutral(permit);
+            }
+        }
+    }
+
+    private void release(Permit permit, AtomicBoolean recorded) {
+        if (recorded.compareAndSet(false, true)) {
+            onNeutral(permit);
+        }
+    }
+
+    private synchronized void onNeutral(Permit permit) {
+        // A cancelled or rejected probe proves nothing; its slot goes to the next call
+        if (permit == Permit.PROBE && state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    private synchronized void onSuccess(Permit permit) {
+        if (permit == Permit.PROBE) {
+            if (state != State.HALF_OPEN) {
+                return;
+            }
+            probesInFlight--;
+            probeSuccesses++;
+            if (probeSuccesses >= settings.getHalfOpenProbes()) {
+                logger.info("Ollama answered {} probe call(s), closing the circuit breaker", probeSuccesses);
+                state = State.CLOSED;
+                consecutiveFailures = 0;
+            }
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    private synchronized void onFailure(Permit permit, Throwable error) {
+        if (permit == Permit.PROBE) {
+            if (state == State.HALF_OPEN) {
+                logger.warn("Ollama circuit breaker probe failed, opening it again: {}", error.toString());
+                open();
+            }
+        } else if (state == State.CLOSED && ++consecutiveFailures >= settings.getFailureThreshold()) {
+            logger.warn("Ollama circuit breaker opened after {} consecutive failures, the last: {}",
+                    consecutiveFailures, error.toString());
+            open();
+        }
+        // Late results of calls let through before the breaker opened change nothing
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtMillis = System.currentTimeMillis();
+        timesOpened++;
+    }
+
+    private boolean openElapsed() {
+        return System.currentTimeMillis() - openedAtMillis >= settings.getOpenDuration().toMillis();
+    }
+
+    private OllamaUnavailableException unavailable() {
+        Duration retryAfter = getRetryAfter();
+        return new OllamaUnavailableException("Ollama is unavailable, the circuit breaker is open",
+                retryAfter.isZero() ? Duration.ofSeconds(1) : retryAfter);
+    }
+
+    /**
+     * Whether the error, or one of its causes, says Ollama is unreachable, hung or failing
+     */
+    static boolean countsAsFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WebClientRequestException
+                    || cause instanceof OllamaUnavailableException
+                    || cause instanceof PrematureCloseException
+                    || cause instanceof TimeoutException
+                    || cause instanceof io.netty.handler.timeout.TimeoutException) {
+                return true;
+            }
+            if (cause instanceof WebClientResponseException response) {
+                return response.getStatusCode().is5xxServerError();
+            }
+        }
+        return false;
+    }
+}
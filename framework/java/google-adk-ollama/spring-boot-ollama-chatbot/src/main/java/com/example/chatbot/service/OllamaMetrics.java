@@ -0,0 +1,163 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.model.GenerationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for calls to Ollama, tagged by model and backend.
+ *
+ * <p>Latency, time to first token and queue wait are measured here; prefill, decode and model load
+ * times and the token counts come from the timings Ollama reports with each finished generation.
+ * Histograms for every {@code ollama.*} meter are switched on in application.yml.
+ *
+ * <p>For cancelled streams the decode time saved is estimated from the answer length and decode speed
+ * the model has shown on finished generations.
+ */
+@Component
+public class OllamaMetrics {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    // Weight of the latest generation in the per-model averages
+    private static final double AVERAGE_SMOOTHING = 0.1;
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<String, DecodeAverages> decodeAverages = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OllamaMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Time a request spent waiting for an admission slot before it was sent
+     */
+    public void recordQueueWait(String model, String backend, long nanos) {
+        timer("ollama.queue.wait", "Time waiting for a free admission slot", model, backend)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time from sending a request to its last byte, as seen by this application
+     */
+    public void recordLatency(String model, String backend, boolean stream, String outcome, long nanos) {
+        Timer.builder("ollama.generation.latency")
+                .description("Time from sending a generation request to its completion")
+                .tags("model", model, "backend", backend, "stream", Boolean.toString(stream), "outcome", outcome)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time from sending a streaming request to receiving its first token
+     */
+    public void recordTimeToFirstToken(String model, String backend, long nanos) {
+        timer("ollama.generation.ttft", "Time from sending a streaming request to its first token", model, backend)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Server-side timings and token counts of a finished generation
+     */
+    public void recordGeneration(String model, String backend, GenerationResult result) {
+        if (result.getLoadDurationNanos() > 0) {
+            timer("ollama.model.load", "Time Ollama spent loading the model", model, backend)
+                    .record(result.getLoadDurationNanos(), TimeUnit.NANOSECONDS);
+        }
+        if (result.getPromptEvalDurationNanos() > 0) {
+            timer("ollama.prefill", "Time Ollama spent evaluating the prompt", model, backend)
+                    .record(result.getPromptEvalDurationNanos(), TimeUnit.NANOSECONDS);
+            summary("ollama.prefill.throughput", "Prompt tokens evaluated per second", "tokens/s", model, backend)
+                    .record(result.getPromptEvalCount() * NANOS_PER_SECOND / result.getPromptEvalDurationNanos());
+        }
+        if (result.getEvalDurationNanos() > 0) {
+            timer("ollama.decode", "Time Ollama spent generating the response", model, backend)
+                    .record(result.getEvalDurationNanos(), TimeUnit.NANOSECONDS);
+            summary("ollama.decode.throughput", "Response tokens generated per second", "tokens/s", model, backend)
+                    .record(result.getEvalCount() * NANOS_PER_SECOND / result.getEvalDurationNanos());
+        }
+        summary("ollama.tokens.prompt", "Prompt tokens evaluated per generation", "tokens", model, backend)
+                .record(result.getPromptEvalCount());
+        summary("ollama.tokens.generated", "Response tokens generated per generation", "tokens", model, backend)
+                .record(result.getEvalCount());
+        if (result.getEvalCount() > 0 && result.getEvalDurationNanos() > 0) {
+            decodeAverages.computeIfAbsent(model, m -> new DecodeAverages())
+                    .update(result.getEvalCount(), (double) result.getEvalDurationNanos() / result.getEvalCount());
+        }
+    }
+
+    /**
+     * A stream cancelled by its client after {@code generatedTokens} tokens, the first of them
+     * {@code decodeNanos} ago. The tokens it would still have produced are the requested
+     * {@code num_predict}, or else the model's average answer length, less those already generated;
+     * they are priced at the decode speed seen on this stream, or the model's average before two tokens.
+     */
+    public void recordCancellation(String model, String backend, long generatedTokens, long decodeNanos,
+                                   Integer numPredict) {
+        Counter.builder("ollama.generation.cancelled")
+                .description("Streaming generations cancelled by the client before they finished")
+                .tags("model", model, "backend", backend)
+                .register(registry)
+                .increment();
+
+        DecodeAverages averages = decodeAverages.get(model);
+        double expectedTokens = numPredict != null && numPredict > 0 ? numPredict
+                : averages != null ? averages.generatedTokens() : 0;
+        double nanosPerToken = generatedTokens >= 2 ? (double) decodeNanos / (generatedTokens - 1)
+                : averages != null ? averages.nanosPerToken() : 0;
+        double remainingTokens = Math.max(0, expectedTokens - generatedTokens);
+        Counter.builder("ollama.generation.reclaimed")
+                .description("Estimated decode time Ollama was spared by cancelled streams")
+                .baseUnit("seconds")
+                .tags("model", model, "backend", backend)
+                .register(registry)
+                .increment(remainingTokens * nanosPerToken / NANOS_PER_SECOND);
+    }
+
+    private Timer timer(String name, String description, String model, String backend) {
+        return Timer.builder(name)
+                .description(description)
+                .tags("model", model, "backend", backend)
+                .register(registry);
+    }
+
+    private DistributionSummary summary(String name, String description, String unit, String model, String backend) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(unit)
+                .tags("model", model, "backend", backend)
+                .register(registry);
+    }
+
+    /**
+     * Smoothed answer length and decode time per token of one model
+     */
+    private static final class DecodeAverages {
+
+        private double generatedTokens;
+        private double nanosPerToken;
+
+        synchronized void update(long tokens, double tokenNanos) {
+            generatedTokens = generatedTokens == 0 ? tokens
+                    : AVERAGE_SMOOTHING * tokens + (1 - AVERAGE_SMOOTHING) * generatedTokens;
+            nanosPerToken = nanosPerToken == 0 ? tokenNanos
+                    : AVERAGE_SMOOTHING * tokenNanos + (1 - AVERAGE_SMOOTHING) * nanosPerToken;
+        }
+
+        synchronized double generatedTokens() {
+            return generatedTokens;
+        }
+
+        synchronized double nanosPerToken() {
+            return nanosPerToken;
+        }
+    }
+}
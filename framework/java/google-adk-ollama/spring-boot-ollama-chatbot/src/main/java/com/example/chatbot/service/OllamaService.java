@@ -1,16 +1,28 @@
 package com.example.chatbot.service;
 
+import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.model.GenerationResult;
+import com.example.chatbot.model.OllamaApi;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Service class for interacting with Ollama API
@@ -20,122 +32,458 @@ public class OllamaService {
     
     private static final Logger logger = LoggerFactory.getLogger(OllamaService.class);
     
-    private final WebClient ollamaWebClient;
+    private final BackendPool backendPool;
+    private final ModelRegistry modelRegistry;
+    private final RequestCoalescer requestCoalescer;
+    private final ResponseCache responseCache;
+    private final SemanticCache semanticCache;
+    private final ModelConcurrencyLimiter concurrencyLimiter;
+    private final OllamaMetrics ollamaMetrics;
+    private final ModelLifecycleManager lifecycleManager;
+    private final OllamaCircuitBreaker circuitBreaker;
+    private final OllamaProperties ollamaProperties;
     private final ObjectMapper objectMapper;
     
     @Autowired
-    public OllamaService(WebClient ollamaWebClient) {
-        this.ollamaWebClient = ollamaWebClient;
-        this.objectMapper = new ObjectMapper();
+    public OllamaService(BackendPool backendPool, ModelRegistry modelRegistry,
+                         RequestCoalescer requestCoalescer, ResponseCache responseCache,
+                         SemanticCache semanticCache, ModelConcurrencyLimiter concurrencyLimiter,
+                         OllamaMetrics ollamaMetrics, ModelLifecycleManager lifecycleManager,
+                         OllamaCircuitBreaker circuitBreaker, OllamaProperties ollamaProperties,
+                         ObjectMapper objectMapper) {
+        this.backendPool = backendPool;
+        this.modelRegistry = modelRegistry;
+        this.requestCoalescer = requestCoalescer;
+        this.responseCache = responseCache;
+        this.semanticCache = semanticCache;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.ollamaMetrics = ollamaMetrics;
+        this.lifecycleManager = lifecycleManager;
+        this.circuitBreaker = circuitBreaker;
+        this.ollamaProperties = ollamaProperties;
+        this.objectMapper = objectMapper;
     }
       /**
      * Generate a response from Ollama using the specified model
      */
     public Mono<String> generateResponse(String prompt, String model) {
-        logger.info("Generating response with model: {} for prompt: {}", model, prompt);
-        
-        // First check if the model is available
-        return isModelAvailable(model)
-                .flatMap(available -> {
-                    if (!available) {
-                        logger.warn("Model {} is not available, attempting to pull it", model);
-                        return pullModel(model)
-                                .then(Mono.defer(() -> generateWithModel(prompt, model)));
-                    } else {
-                        return generateWithModel(prompt, model);
-                    }
-                })
+        return generate(null, prompt, model, null, null)
+                .map(GenerationResult::getResponse)
                 .onErrorResume(error -> {
                     logger.error("Error in generateResponse for model: {} with prompt: {}", model, prompt, error);
                     return Mono.just("I apologize, but I'm currently unable to process your request. Please ensure Ollama is running with the '" + model + "' model available. Error: " + error.getMessage());
                 });
     }
     
-    private Mono<String> generateWithModel(String prompt, String model) {
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", model);
-        requestBody.put("prompt", prompt);
-        requestBody.put("stream", false);
+    /**
+     * Generate a response, continuing from the context returned by a previous turn when one is given.
+     * Requests without a context may be answered from the exact or the semantic response cache,
+     * and those that match one already in flight share its result. Errors are propagated to the caller;
+     * while the circuit breaker is open, calls that would reach Ollama fail at once with
+     * {@link OllamaUnavailableException}, but cached answers are still served. Turns of the same session are routed to the same backend while it stays healthy.
+     */
+    public Mono<GenerationResult> generate(String sessionId, String prompt, String model, int[] context,
+                                           Map<String, Object> options) {
+        logger.info("Generating response with model: {} for prompt: {}", model, prompt);
         
-        return ollamaWebClient
-                .post()
-                .uri("/api/generate")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(this::extractResponse)
-                .doOnSuccess(response -> logger.info("Successfully generated response with model: {}", model))
-                .doOnError(error -> logger.error("Error generating response with model: {}", model, error));
+        if (context != null) {
+            return ensureModelAndGenerate(sessionId, prompt, model, context, options);
+        }
+        
+        GenerationKey key = GenerationKey.of(model, prompt, options);
+        boolean cacheable = responseCache.isCacheable(key);
+        if (cacheable) {
+            GenerationResult cached = responseCache.get(key);
+            if (cached != null) {
+                logger.info("Serving cached response for model: {}", model);
+                return Mono.just(cached);
+            }
+        }
+        
+        Mono<GenerationResult> generation = ollamaProperties.isRequestCoalescing()
+                ? requestCoalescer.execute(key, () -> ensureModelAndGenerate(sessionId, prompt, model, null, options))
+                : ensureModelAndGenerate(sessionId, prompt, model, null, options);
+        if (cacheable) {
+            generation = generation.doOnNext(result -> responseCache.put(key, result));
+        }
+        if (semanticCache.isEnabled() && key.deterministic()) {
+            return withSemanticCache(prompt, model, options, generation);
+        }
+        return generation;
     }
-      /**
-     * Check if Ollama is available and the model exists
+    
+    /**
+     * Generate a response to a prompt that carries one session's data, such as a summarization request
+     * or a summarized session's turn. It never reads or fills the exact or semantic caches and never
+     * shares a request in flight: its answer can only reach the caller.
      */
-    public Mono<Boolean> isModelAvailable(String model) {
-        return ollamaWebClient
-                .get()
-                .uri("/api/tags")
-                .retrieve()
-                .bodyToMono(String.class)
+    public Mono<GenerationResult> generateUncached(String sessionId, String prompt, String model,
+                                                   Map<String, Object> options) {
+        logger.debug("Generating uncached response with model: {}", model);
+        return ensureModelAndGenerate(sessionId, prompt, model, null, options);
+    }
+    
+    /**
+     * Embed the prompt and serve the answer of a similar earlier prompt if there is one.
+     * If embedding fails the request simply goes to the model.
+     */
+    private Mono<GenerationResult> withSemanticCache(String prompt, String model, Map<String, Object> options,
+                                                     Mono<GenerationResult> generation) {
+        return embed(prompt)
+                .map(Optional::of)
+                .onErrorResume(error -> {
+                    logger.warn("Could not embed prompt for semantic cache lookup: {}", error.getMessage());
+                    return Mono.just(Optional.empty());
+                })
+                .flatMap(embedding -> {
+                    if (embedding.isEmpty()) {
+                        return generation;
+                    }
+                    GenerationResult similar = semanticCache.lookup(model, options, embedding.get());
+                    if (similar != null) {
+                        logger.info("Serving semantically cached response for model: {}", model);
+                        return Mono.just(similar);
+                    }
+                    return generation.doOnNext(result -> semanticCache.put(model, options, embedding.get(), result));
+                });
+    }
+    
+    /**
+     * One non-streaming /api/chat call, routed and admitted like a generation. Used by the agents,
+     * which keep the conversation and any tool results in the request's messages.
+     */
+    public Mono<OllamaApi.ChatResponse> chat(String sessionId, OllamaApi.ChatRequest request) {
+        String model = request.model();
+        return circuitBreaker.protect(backendPool.execute(model, sessionId, backend ->
+                admitted(model, backend, () -> {
+                    long sentAt = System.nanoTime();
+                    return backend.webClient()
+                            .post()
+                            .uri("/api/chat")
+                            .bodyValue(request.withKeepAlive(lifecycleManager.keepAliveFor(model)))
+                            .retrieve()
+                            .bodyToMono(OllamaApi.ChatResponse.class)
+                            .<OllamaApi.ChatResponse>handle((response, sink) -> {
+                                if (response.error() != null) {
+                                    sink.error(new IllegalStateException("Ollama returned an error: " + response.error()));
+                                } else {
+                                    sink.next(response);
+                                }
+                            })
+                            .doOnSuccess(response -> {
+                                ollamaMetrics.recordLatency(model, backend.getName(), false, "success", System.nanoTime() - sentAt);
+                                ollamaMetrics.recordGeneration(model, backend.getName(), response.toResult());
+                            })
+                            .doOnError(error -> ollamaMetrics.recordLatency(model, backend.getName(), false, "error", System.nanoTime() - sentAt));
+                })))
+                .doOnError(error -> logger.error("Error in chat call with model: {}", model, error));
+    }
+    
+    /**
+     * Compute an embedding of the text with the configured embedding model
+     */
+    public Mono<float[]> embed(String text) {
+        String embeddingModel = semanticCache.getEmbeddingModel();
+        OllamaApi.EmbeddingRequest requestBody = new OllamaApi.EmbeddingRequest(embeddingModel, text,
+                lifecycleManager.keepAliveFor(embeddingModel));
+        
+        return circuitBreaker.protect(backendPool.execute(embeddingModel, null, backend ->
+                        admitted(embeddingModel, backend, () -> backend.webClient()
+                                .post()
+                                .uri("/api/embeddings")
+                                .bodyValue(requestBody)
+                                .retrieve()
+                                .bodyToMono(OllamaApi.EmbeddingResponse.class))))
                 .map(response -> {
-                    logger.debug("Available models response: {}", response);
-                    return response.contains("\"" + model + "\"") || response.contains(model);
+                    if (response.embedding() == null || response.embedding().length == 0) {
+                        throw new IllegalStateException("Ollama returned no embedding");
+                    }
+                    return response.embedding();
+                });
+    }
+    
+    private Mono<GenerationResult> ensureModelAndGenerate(String sessionId, String prompt, String model, int[] context,
+                                                          Map<String, Object> options) {
+        // The pool picks a backend that holds the model, answering from the registry cache;
+        // if none does, the model is pulled once onto the least loaded backend
+        return circuitBreaker.protect(backendPool.execute(model, sessionId,
+                backend -> generateWithModel(backend, prompt, model, context, options)));
+    }
+    
+    private Mono<GenerationResult> generateWithModel(OllamaBackend backend, String prompt, String model, int[] context,
+                                                     Map<String, Object> options) {
+        // A given context makes Ollama resume from that KV state, so only the new prompt has to be prefilled
+        OllamaApi.GenerateRequest requestBody = new OllamaApi.GenerateRequest(model, prompt, false, context,
+                options != null && !options.isEmpty() ? options : null, lifecycleManager.keepAliveFor(model));
+        
+        // Waits for a free slot of this model, or fails fast when its queue is full
+        return admitted(model, backend, () -> {
+                    long sentAt = System.nanoTime();
+                    return backend.webClient()
+                            .post()
+                            .uri("/api/generate")
+                            .bodyValue(requestBody)
+                            .retrieve()
+                            // Decoded from the response buffers directly into the record
+                            .bodyToMono(OllamaApi.GenerateResponse.class)
+                            .map(OllamaService::toResult)
+                            .doOnSuccess(result -> {
+                                ollamaMetrics.recordLatency(model, backend.getName(), false, "success", System.nanoTime() - sentAt);
+                                ollamaMetrics.recordGeneration(model, backend.getName(), result);
+                            })
+                            .doOnError(error -> ollamaMetrics.recordLatency(model, backend.getName(), false, "error", System.nanoTime() - sentAt));
+                })
+                .doOnSuccess(result -> logger.info("Successfully generated response with model: {} on {} (prefill of {} tokens took {} ms, context reused: {})",
+                        model, backend, result.getPromptEvalCount(), result.getPromptEvalDurationNanos() / 1_000_000, context != null))
+                .doOnError(error -> logger.error("Error generating response with model: {}", model, error));
+    }
+    
+    /**
+     * Stream a response from Ollama token by token as the model produces it
+     */
+    public Flux<String> generateResponseStream(String prompt, String model) {
+        return generateResponseStream(null, prompt, model, null, null, newContext -> { });
+    }
+    
+    /**
+     * Stream a response continuing from a previous turn's context.
+     * The context of the final chunk is handed to {@code contextSink} when the stream completes.
+     * Streams are never cached or shared, so the prompt may carry the session's own data.
+     */
+    public Flux<String> generateResponseStream(String sessionId, String prompt, String model, int[] context,
+                                               Map<String, Object> options, Consumer<int[]> contextSink) {
+        logger.info("Streaming response with model: {} for prompt: {}", model, prompt);
+        
+        return circuitBreaker.protectMany(backendPool.executeMany(model, sessionId,
+                backend -> streamWithModel(backend, prompt, model, context, options, contextSink)));
+    }
+    
+    private Flux<String> streamWithModel(OllamaBackend backend, String prompt, String model, int[] context,
+                                         Map<String, Object> options, Consumer<int[]> contextSink) {
+        OllamaApi.GenerateRequest requestBody = new OllamaApi.GenerateRequest(model, prompt, true, context,
+                options != null && !options.isEmpty() ? options : null, lifecycleManager.keepAliveFor(model));
+        
+        // Ollama answers with one JSON object per line; the NDJSON decoder parses
+        // each chunk as soon as its bytes arrive instead of buffering the body.
+        // The model's slot is held until the stream ends. Cancelling the stream closes the connection,
+        // which makes Ollama stop generating.
+        return admittedMany(model, backend, () -> {
+                    long sentAt = System.nanoTime();
+                    AtomicLong firstTokenAt = new AtomicLong();
+                    AtomicLong tokens = new AtomicLong();
+                    return backend.webClient()
+                            .post()
+                            .uri("/api/generate")
+                            .accept(MediaType.APPLICATION_NDJSON)
+                            .bodyValue(requestBody)
+                            .retrieve()
+                            .bodyToFlux(OllamaApi.GenerateResponse.class)
+                            .takeUntil(OllamaApi.GenerateResponse::done)
+                            .<String>handle((chunk, sink) -> {
+                                if (chunk.error() != null) {
+                                    sink.error(new IllegalStateException(chunk.error()));
+                                    return;
+                                }
+                                String token = chunk.response();
+                                if (token != null && !token.isEmpty()) {
+                                    // Ollama sends one token per chunk
+                                    if (tokens.getAndIncrement() == 0) {
+                                        firstTokenAt.set(System.nanoTime());
+                                        ollamaMetrics.recordTimeToFirstToken(model, backend.getName(), firstTokenAt.get() - sentAt);
+                                    }
+                                    sink.next(token);
+                                }
+                                if (chunk.done()) {
+                                    // The final chunk carries the same counts and timings as a non-streaming answer
+                                    GenerationResult result = chunk.toResult();
+                                    contextSink.accept(result.getContext());
+                                    ollamaMetrics.recordGeneration(model, backend.getName(), result);
+                                }
+                            })
+                            .doOnComplete(() -> ollamaMetrics.recordLatency(model, backend.getName(), true, "success", System.nanoTime() - sentAt))
+                            .doOnError(error -> ollamaMetrics.recordLatency(model, backend.getName(), true, "error", System.nanoTime() - sentAt))
+                            .doOnCancel(() -> {
+                                long now = System.nanoTime();
+                                ollamaMetrics.recordLatency(model, backend.getName(), true, "cancelled", now - sentAt);
+                                ollamaMetrics.recordCancellation(model, backend.getName(), tokens.get(),
+                                        tokens.get() > 0 ? now - firstTokenAt.get() : 0, numPredict(options));
+                                logger.info("Stream with model: {} on {} cancelled after {} tokens", model, backend, tokens.get());
+                            });
                 })
-                .doOnError(error -> logger.warn("Could not check model availability for {}: {}", model, error.getMessage()))
-                .onErrorReturn(false);
+                .doOnComplete(() -> logger.info("Successfully streamed response with model: {}", model))
+                .doOnError(error -> logger.error("Error streaming response with model: {}", model, error));
     }
     
     /**
-     * Get list of available models
+     * Check if Ollama is available and the model exists on at least one healthy backend
+     */
+    public Mono<Boolean> isModelAvailable(String model) {
+        return backendPool.isAvailable(model);
+    }
+    
+    /**
+     * Get list of available models, merged over all healthy backends
      */
     public Mono<String> getAvailableModels() {
-        return ollamaWebClient
-                .get()
-                .uri("/api/tags")
-                .retrieve()
-                .bodyToMono(String.class)
+        return Flux.fromIterable(backendPool.healthyBackends())
+                .flatMapSequential(backend -> backend.webClient()
+                        .get()
+                        .uri("/api/tags")
+                        .retrieve()
+                        .bodyToMono(JsonNode.class)
+                        .doOnError(error -> logger.error("Error getting available models from {}", backend, error))
+                        .onErrorResume(error -> Mono.empty()))
+                .collectList()
+                .map(this::mergeModelLists)
                 .doOnSuccess(response -> logger.info("Retrieved available models"))
-                .doOnError(error -> logger.error("Error getting available models", error))
                 .onErrorReturn("{\"models\":[]}");
     }
     
+    private String mergeModelLists(List<JsonNode> listings) {
+        ObjectNode merged = objectMapper.createObjectNode();
+        ArrayNode models = merged.putArray("models");
+        Set<String> seen = new HashSet<>();
+        for (JsonNode listing : listings) {
+            for (JsonNode entry : listing.path("models")) {
+                if (seen.add(entry.path("name").asText())) {
+                    models.add(entry);
+                }
+            }
+        }
+        return merged.toString();
+    }
+    
+    /**
+     * Hit/miss/refresh counters of the model availability cache
+     */
+    public Map<String, Long> getModelCacheStats() {
+        return modelRegistry.getStats();
+    }
+    
+    /**
+     * Counters of identical in-flight generations that shared one upstream call
+     */
+    public Map<String, Object> getCoalescingStats() {
+        return requestCoalescer.getStats();
+    }
+    
+    /**
+     * Hit rate, eviction and footprint counters of the response cache
+     */
+    public Map<String, Object> getResponseCacheStats() {
+        return responseCache.getStats();
+    }
+    
+    /**
+     * Hit rate, size and footprint counters of the semantic cache
+     */
+    public Map<String, Object> getSemanticCacheStats() {
+        return semanticCache.getStats();
+    }
+    
+    /**
+     * Per-model admission limits, queue lengths and rejection counters
+     */
+    public Map<String, Object> getAdmissionStats() {
+        return concurrencyLimiter.getStats();
+    }
+    
+    /**
+     * Load state, request rate and keep-alive class of every model in use
+     */
+    public Map<String, Object> getModelStates() {
+        return lifecycleManager.getStates();
+    }
+    
+    public Map<String, ModelLifecycleManager.LoadState> getModelLoadStates() {
+        return lifecycleManager.getLoadStates();
+    }
+    
     /**
-     * Check if Ollama service is running
+     * State and counters of the circuit breaker in front of Ollama
+     */
+    public Map<String, Object> getCircuitBreakerStats() {
+        return circuitBreaker.getStats();
+    }
+    
+    public OllamaCircuitBreaker.State getCircuitBreakerState() {
+        return circuitBreaker.getState();
+    }
+    
+    /**
+     * Health, load and pinned sessions of every backend
+     */
+    public List<Map<String, Object>> getBackendStats() {
+        return backendPool.getStats();
+    }
+    
+    /**
+     * Check if at least one Ollama backend is running
      */
     public Mono<Boolean> isOllamaRunning() {
-        return ollamaWebClient
-                .get()
-                .uri("/api/tags")
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(response -> true)
-                .doOnError(error -> logger.warn("Ollama service check failed: {}", error.getMessage()))
-                .onErrorReturn(false);
+        return backendPool.isAnyBackendUp()
+                .doOnNext(running -> {
+                    if (!running) {
+                        logger.warn("Ollama service check failed: no backend answered");
+                    }
+                });
     }
     
     /**
-     * Pull a model from Ollama registry
+     * Pull a model from Ollama registry onto every healthy backend
      */
     public Mono<String> pullModel(String model) {
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("name", model);
-        
-        return ollamaWebClient
-                .post()
-                .uri("/api/pull")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(String.class)
-                .doOnSuccess(response -> logger.info("Model {} pulled successfully", model))
-                .doOnError(error -> logger.error("Error pulling model {}", model, error));
-    }
-    
-    private String extractResponse(String jsonResponse) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(jsonResponse);
-            return jsonNode.get("response").asText();
-        } catch (Exception e) {
-            logger.error("Error parsing Ollama response", e);
-            return "Error parsing response from Ollama";
+        return Flux.fromIterable(backendPool.healthyBackends())
+                .flatMap(backend -> modelRegistry.pullModel(backend, model))
+                .collectList()
+                .map(responses -> String.join("\n", responses));
+    }
+    
+    /**
+     * Run a call once admission control grants it a slot, recording how long it queued
+     */
+    private <T> Mono<T> admitted(String model, OllamaBackend backend, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long queuedAt = System.nanoTime();
+            return concurrencyLimiter.execute(limiterKey(model, backend), () -> {
+                ollamaMetrics.recordQueueWait(model, backend.getName(), System.nanoTime() - queuedAt);
+                return call.get();
+            });
+        });
+    }
+    
+    private <T> Flux<T> admittedMany(String model, OllamaBackend backend, Supplier<Flux<T>> call) {
+        return Flux.defer(() -> {
+            long queuedAt = System.nanoTime();
+            return concurrencyLimiter.executeMany(limiterKey(model, backend), () -> {
+                ollamaMetrics.recordQueueWait(model, backend.getName(), System.nanoTime() - queuedAt);
+                return call.get();
+            });
+        });
+    }
+    
+    private static Integer numPredict(Map<String, Object> options) {
+        return options != null && options.get("num_predict") instanceof Number limit ? limit.intValue() : null;
+    }
+    
+    /**
+     * Admission limits apply to each model on each backend separately, however the model name is spelled
+     */
+    private static String limiterKey(String model, OllamaBackend backend) {
+        return ModelRegistry.normalize(model) + "@" + backend.getName();
+    }
+    
+    /**
+     * Check a non-streaming answer and turn it into a result. Package-private for the microbenchmarks.
+     */
+    static GenerationResult toResult(OllamaApi.GenerateResponse response) {
+        if (response.error() != null) {
+            throw new IllegalStateException("Ollama returned an error: " + response.error());
+        }
+        if (response.response() == null) {
+            // Fail the generation so a malformed body is never cached or stored as an answer
+            throw new IllegalStateException("Ollama response has no text");
         }
+        return response.toResult();
     }
 }
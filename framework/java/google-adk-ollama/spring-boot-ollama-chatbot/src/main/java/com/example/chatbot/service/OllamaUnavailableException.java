@@ -0,0 +1,21 @@
+package com.example.chatbot.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when no call can be made to Ollama right now, because the circuit breaker is open or no
+ * backend is healthy. Carries the time after which the client may reasonably try again.
+ */
+public class OllamaUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public OllamaUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.model.GenerationResult;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Shares one upstream generation among identical requests that arrive while it is in flight.
+ * Requests are identical when their {@link GenerationKey}s match.
+ */
+@Component
+public class RequestCoalescer {
+
+    private final ConcurrentHashMap<GenerationKey, Mono<GenerationResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong upstreamCalls = new AtomicLong();
+
+    /**
+     * Join the in-flight generation for this key, or start one with {@code generation}
+     */
+    public Mono<GenerationResult> execute(GenerationKey key, Supplier<Mono<GenerationResult>> generation) {
+        return Mono.defer(() -> {
+            requests.incrementAndGet();
+            return inFlight.computeIfAbsent(key, k -> {
+                upstreamCalls.incrementAndGet();
+                // share() cancels the upstream call only once every waiting caller has cancelled
+                return Mono.defer(generation)
+                        .doFinally(signal -> inFlight.remove(k))
+                        .share();
+            });
+        });
+    }
+
+    /**
+     * Request, upstream call and coalescing ratio counters
+     */
+    public Map<String, Object> getStats() {
+        long total = requests.get();
+        long upstream = upstreamCalls.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", total);
+        stats.put("upstreamCalls", upstream);
+        stats.put("coalesced", total - upstream);
+        stats.put("coalescingRatio", total == 0 ? 0.0 : (double) (total - upstream) / total);
+        stats.put("inFlight", inFlight.size());
+        return stats;
+    }
+}
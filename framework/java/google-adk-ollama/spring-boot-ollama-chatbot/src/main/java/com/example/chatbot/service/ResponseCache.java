@@ -0,0 +1,84 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.model.GenerationResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opt-in cache of complete responses for deterministic, context-free prompts.
+ * Bounded by the estimated bytes of its entries; Caffeine's W-TinyLFU policy decides
+ * which entries to keep, so frequently asked prompts survive bursts of one-off ones.
+ */
+@Component
+public class ResponseCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final OllamaProperties.ResponseCache settings;
+    private final Cache<GenerationKey, GenerationResult> cache;
+
+    @Autowired
+    public ResponseCache(OllamaProperties ollamaProperties) {
+        this.settings = ollamaProperties.getResponseCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getMaxSize().toBytes())
+                .weigher((GenerationKey key, GenerationResult result) -> weigh(key, result))
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Whether a request may be answered from the cache. Requests with a non-zero temperature
+     * always go to the model.
+     */
+    public boolean isCacheable(GenerationKey key) {
+        return settings.isEnabled() && key.deterministic();
+    }
+
+    public GenerationResult get(GenerationKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(GenerationKey key, GenerationResult result) {
+        cache.put(key, result);
+    }
+
+    /**
+     * Hit rate, eviction count and memory footprint of the cache
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", settings.isEnabled());
+        result.put("entries", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("weightedSizeBytes", cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L));
+        result.put("maxSizeBytes", settings.getMaxSize().toBytes());
+        return result;
+    }
+
+    /**
+     * Approximate retained size of an entry: UTF-16 strings, the context array and fixed object overhead
+     */
+    private static int weigh(GenerationKey key, GenerationResult result) {
+        long bytes = ENTRY_OVERHEAD_BYTES
+                + 2L * key.model().length()
+                + 2L * key.prompt().length()
+                + 2L * (result.getResponse() != null ? result.getResponse().length() : 0)
+                + 4L * (result.getContext() != null ? result.getContext().length : 0);
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.model.GenerationResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in cache that answers paraphrased prompts with a previously generated response.
+ * Prompts are compared by the cosine similarity of their embeddings, with one
+ * {@link VectorIndex} per (model, options) partition so answers never cross models.
+ *
+ * <p>Only deterministic (temperature 0) generations are cached, so only the options that can still change a
+ * greedy answer take part in the partition key; a client varying anything else, such as the seed, shares
+ * one partition. At most {@code max-partitions} partitions are kept, least recently used first out, and
+ * each index allocates its off-heap storage as it fills, so unusual options cost little memory.
+ *
+ * <p>Entries are stored without their context: it encodes the earlier prompt, so a session answered
+ * from the cache must not continue from it.
+ */
+@Component
+public class SemanticCache {
+
+    // Fixed so that LSH buckets are reproducible across restarts and partitions
+    private static final long HYPERPLANE_SEED = 42L;
+    // Coalesced callers all try to store the same answer; keep only the first copy
+    private static final double DUPLICATE_SIMILARITY = 0.999;
+    // With greedy decoding only these options change the answer; sampling options such as seed or top_k do not
+    private static final Set<String> OUTPUT_OPTIONS = Set.of("num_predict", "num_ctx", "stop", "repeat_penalty",
+            "repeat_last_n", "presence_penalty", "frequency_penalty", "penalize_newline");
+
+    private final OllamaProperties.SemanticCache settings;
+    private final Cache<Partition, VectorIndex<GenerationResult>> partitions;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public SemanticCache(OllamaProperties ollamaProperties) {
+        this.settings = ollamaProperties.getSemanticCache();
+        this.partitions = Caffeine.newBuilder()
+                .maximumSize(settings.getMaxPartitions())
+                // Every entry of a partition idle this long has expired anyway
+                .expireAfterAccess(settings.getTtl())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public String getEmbeddingModel() {
+        return settings.getEmbeddingModel();
+    }
+
+    /**
+     * Find the cached response of the most similar earlier prompt, if it is similar enough
+     */
+    public GenerationResult lookup(String model, Map<String, Object> options, float[] embedding) {
+        VectorIndex<GenerationResult> index = partitions.getIfPresent(Partition.of(model, options));
+        GenerationResult result = index != null && index.dimensions() == embedding.length
+                ? index.search(embedding, settings.getSimilarityThreshold())
+                : null;
+        (result != null ? hits : misses).incrementAndGet();
+        return result;
+    }
+
+    public void put(String model, Map<String, Object> options, float[] embedding, GenerationResult result) {
+        Partition partition = Partition.of(model, options);
+        VectorIndex<GenerationResult> index = partitions.asMap().compute(partition, (key, existing) ->
+                existing != null && existing.dimensions() == embedding.length
+                        ? existing
+                        // First entry, or the embedding model changed dimensions: start a fresh index
+                        : new VectorIndex<>(embedding.length, settings.getMaxEntriesPerModel(),
+                                settings.getTtl().toMillis(), HYPERPLANE_SEED));
+        if (index.search(embedding, DUPLICATE_SIMILARITY) == null) {
+            index.add(embedding, result.withoutContext());
+        }
+    }
+
+    /**
+     * Hit rate, size, eviction and off-heap footprint counters
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        int entries = 0;
+        long evictions = 0;
+        long offHeapBytes = 0;
+        for (VectorIndex<GenerationResult> index : partitions.asMap().values()) {
+            entries += index.size();
+            evictions += index.evictions();
+            offHeapBytes += index.offHeapBytes();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", settings.isEnabled());
+        stats.put("partitions", partitions.estimatedSize());
+        stats.put("entries", entries);
+        stats.put("hits", hitCount);
+        stats.put("misses", total - hitCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions);
+        stats.put("offHeapBytes", offHeapBytes);
+        return stats;
+    }
+
+    private record Partition(String model, Map<String, Object> options) {
+
+        static Partition of(String model, Map<String, Object> options) {
+            Map<String, Object> key = new TreeMap<>();
+            if (options != null) {
+                options.forEach((name, value) -> {
+                    if (OUTPUT_OPTIONS.contains(name) && value != null) {
+                        // 100 and 100.0 from different JSON clients are the same setting
+                        key.put(name, value instanceof Number number ? (Object) number.doubleValue() : value);
+                    }
+                });
+            }
+            return new Partition(model, key);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.chatbot.service;
+
+/**
+ * Thrown when a request names a model that no healthy backend has installed and that is not one of
+ * the models the application may pull on demand.
+ */
+public class UnknownModelException extends RuntimeException {
+
+    private final String model;
+
+    public UnknownModelException(String model) {
+        super("Model " + model + " is not installed on any backend and may not be pulled on demand");
+        this.model = model;
+    }
+
+    public String getModel() {
+        return model;
+    }
+}
@@ -7,7 +7,11 @@ class ChatBot {
         this.sendButton = document.querySelector('button[type="submit"]');
         this.form = document.querySelector('form');
         this.isTyping = false;
-        this.sessionId = 'default';
+        // The server renders the page for this browser's session and names it here; the cookie
+        // makes a reload render the same conversation
+        const sessionMeta = document.querySelector('meta[name="chat-session-id"]');
+        this.sessionId = sessionMeta && sessionMeta.content ? sessionMeta.content : 'default';
+        document.cookie = `chatSessionId=${encodeURIComponent(this.sessionId)}; path=/; max-age=${30 * 24 * 3600}; SameSite=Lax`;
         this.messageHistory = [];
         this.historyIndex = -1;
         this.retryCount = 0;
@@ -132,11 +136,13 @@ class ChatBot {
                 },
                 body: JSON.stringify({
                     message: message,
-                    model: this.getCurrentModel()
+                    model: this.getCurrentModel(),
+                    sessionId: this.sessionId
                 })
             });
             
-            if (!response.ok) {
+            // 429 carries a regular error body: the server is busy and asks us to retry later
+            if (!response.ok && response.status !== 429) {
                 throw new Error(`HTTP error! status: ${response.status}`);
             }
             
@@ -357,7 +363,8 @@ class ChatBot {
                 },
                 body: JSON.stringify({
                     message: message,
-                    model: this.getCurrentModel()
+                    model: this.getCurrentModel(),
+                    sessionId: this.sessionId
                 })
             });
             
@@ -572,10 +579,10 @@ class ChatBot {
         try {
             const response = await fetch(`/api/chat/history?sessionId=${this.sessionId}`);
             if (response.ok) {
-                const history = await response.json();
+                const page = await response.json();
                 this.chatMessages.innerHTML = '';
                 
-                history.forEach(message => {
+                page.messages.forEach(message => {
                     this.addMessage(message.content, message.role, message.model);
                 });
             }
@@ -635,9 +642,24 @@ class ChatBot {
     }
     
     // Export chat functionality
+    async fetchFullHistory() {
+        const history = [];
+        let cursor = null;
+        let hasMore = true;
+        
+        while (hasMore) {
+            const query = cursor === null ? '' : `&cursor=${cursor}`;
+            const response = await fetch(`/api/chat/history?sessionId=${this.sessionId}${query}`);
+            const page = await response.json();
+            history.push(...page.messages);
+            cursor = page.nextCursor;
+            hasMore = page.hasMore;
+        }
+        return history;
+    }
+    
     exportChat() {
-        fetch(`/api/chat/history?sessionId=${this.sessionId}`)
-            .then(response => response.json())
+        this.fetchFullHistory()
             .then(history => {
                 const chatText = history.map(msg => 
                     `[${msg.timestamp}] ${msg.role}: ${msg.content}`
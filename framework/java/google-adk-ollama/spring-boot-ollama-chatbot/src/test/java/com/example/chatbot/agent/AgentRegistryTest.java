@@ -0,0 +1,46 @@
+package com.example.chatbot.agent;
+
+import com.example.chatbot.config.ChatAgentProperties;
+import com.example.chatbot.model.OllamaApi;
+import com.example.chatbot.service.OllamaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AgentRegistryTest {
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final AgentRegistry registry = new AgentRegistry(ollamaService, new ObjectMapper(),
+            new ChatAgentProperties(), new SimpleMeterRegistry());
+
+    @AfterEach
+    void shutdown() {
+        registry.shutdown();
+    }
+
+    @Test
+    void routesModelCallsWithTheChatSessionOfEachTurn() {
+        when(ollamaService.chat(any(), any(OllamaApi.ChatRequest.class))).thenAnswer(invocation -> Mono.just(
+                new OllamaApi.ChatResponse(new OllamaApi.Message("assistant", "Hi!", null, null),
+                        true, 0, 0, 0, 0, 0, 0, null)));
+
+        assertThat(registry.chat("session-a", "tinyllama", "Hello").block()).isEqualTo("Hi!");
+        assertThat(registry.chat("session-b", "tinyllama", "Hello").block()).isEqualTo("Hi!");
+        assertThat(registry.chat("session-a", "tinyllama", "Again").block()).isEqualTo("Hi!");
+
+        // One agent serves both chat sessions, yet each call carries its own session for backend affinity
+        assertThat(registry.getStats()).containsEntry("agents", 1L);
+        verify(ollamaService, times(2)).chat(eq("session-a"), any(OllamaApi.ChatRequest.class));
+        verify(ollamaService, times(1)).chat(eq("session-b"), any(OllamaApi.ChatRequest.class));
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.chatbot.agent;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatToolsTest {
+
+    @Test
+    void calculatesWithPrecedenceAndParentheses() {
+        assertThat(ChatTools.calculate("(2 + 3) * 4.5")).containsEntry("result", 22.5);
+        assertThat(ChatTools.calculate("2 ^ 3 ^ 2 - -1")).containsEntry("result", 513.0);
+    }
+
+    @Test
+    void reportsMalformedExpressionsAsToolErrors() {
+        assertThat(ChatTools.calculate("(1 + 2")).containsKey("error");
+        assertThat(ChatTools.calculate("1 + ")).containsKey("error");
+    }
+
+    @Test
+    void refusesDeeplyNestedExpressionsInsteadOfOverflowingTheStack() {
+        int depth = 100_000;
+        String parentheses = "(".repeat(depth) + "1" + ")".repeat(depth);
+        String signs = "-".repeat(depth) + "1";
+        String exponents = "2^".repeat(depth) + "1";
+
+        for (String expression : new String[] {parentheses, signs, exponents}) {
+            assertThat(ChatTools.calculate(expression).get("error"))
+                    .asString()
+                    .contains("nested too deeply");
+        }
+        assertThat(ChatTools.calculate("(".repeat(50) + "1" + ")".repeat(50))).containsEntry("result", 1.0);
+    }
+}
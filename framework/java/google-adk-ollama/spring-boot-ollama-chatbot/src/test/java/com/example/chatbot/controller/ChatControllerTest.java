@@ -0,0 +1,73 @@
+package com.example.chatbot.controller;
+
+import com.example.chatbot.config.ChatBatchProperties;
+import com.example.chatbot.model.ChatMessage;
+import com.example.chatbot.service.ChatService;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The chat page shows the browser's own conversation, which its script then continues
+ */
+@WebMvcTest(ChatController.class)
+class ChatControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ChatService chatService;
+
+    @MockBean
+    private ChatBatchProperties batchProperties;
+
+    @Test
+    void pageShowsTheHistoryOfTheBrowsersSession() throws Exception {
+        when(chatService.getChatHistory("browser-1"))
+                .thenReturn(Mono.just(List.of(ChatMessage.userMessage("What did I ask before?"))));
+
+        MvcResult started = mockMvc.perform(get("/").cookie(new Cookie(ChatController.SESSION_COOKIE, "browser-1")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("What did I ask before?")))
+                .andExpect(content().string(containsString("<meta name=\"chat-session-id\" content=\"browser-1\">")))
+                .andExpect(content().string(containsString("name=\"sessionId\" value=\"browser-1\"")));
+    }
+
+    @Test
+    void firstVisitStartsASessionOfItsOwn() throws Exception {
+        when(chatService.getChatHistory(anyString())).thenReturn(Mono.just(List.of()));
+
+        MvcResult started = mockMvc.perform(get("/"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(not(containsString("content=\"default\""))));
+        verify(chatService).getChatHistory(argThat(sessionId -> !"default".equals(sessionId)));
+    }
+}
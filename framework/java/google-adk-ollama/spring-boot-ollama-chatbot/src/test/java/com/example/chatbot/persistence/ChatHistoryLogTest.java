@@ -0,0 +1,210 @@
+package com.example.chatbot.persistence;
+
+import com.example.chatbot.config.ChatHistoryProperties;
+import com.example.chatbot.model.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatHistoryLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<ChatHistoryLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeLogs() {
+        opened.forEach(ChatHistoryLog::close);
+    }
+
+    @Test
+    void recoversEveryRecordBeforeATornOne() throws IOException {
+        ChatHistoryLog log = open(DataSize.ofKilobytes(64));
+        for (int i = 0; i < 3; i++) {
+            log.append("session", message("message " + i));
+        }
+        log.close();
+        opened.clear();
+
+        // Corrupt the payload of the last record, as a crash in the middle of writing it would
+        Path segment = segmentFiles().get(0);
+        int lastRecord = recordOffsets(segment).get(2);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f, 0x7f, 0x7f}), lastRecord + 20);
+        }
+
+        ChatHistoryLog recovered = open(DataSize.ofKilobytes(64));
+        assertThat(recovered.size("session")).isEqualTo(2);
+        assertThat(contents(recovered.read("session", 0, 10))).containsExactly("message 0", "message 1");
+
+        // New appends go where the torn record was
+        recovered.append("session", message("after recovery"));
+        recovered.close();
+        opened.clear();
+        assertThat(contents(open(DataSize.ofKilobytes(64)).read("session", 0, 10)))
+                .containsExactly("message 0", "message 1", "after recovery");
+    }
+
+    @Test
+    void compactionDropsClearedSessionsAndKeepsTheOthers() throws IOException {
+        ChatHistoryLog log = open(DataSize.ofKilobytes(1));
+        for (int i = 0; i < 20; i++) {
+            log.append("kept", message("kept " + i));
+            log.append("cleared", message("x".repeat(200)));
+        }
+        log.clear("cleared");
+        long before = totalSize();
+
+        log.compact();
+
+        assertThat(totalSize()).isLessThan(before);
+        assertThat(log.size("cleared")).isZero();
+        assertThat(contents(log.read("kept", 0, 100))).hasSize(20).startsWith("kept 0").endsWith("kept 19");
+
+        log.close();
+        opened.clear();
+        ChatHistoryLog reopened = open(DataSize.ofKilobytes(1));
+        assertThat(reopened.size("cleared")).isZero();
+        assertThat(contents(reopened.read("kept", 0, 100))).hasSize(20).startsWith("kept 0").endsWith("kept 19");
+    }
+
+    @Test
+    void compactionFitsRecordsThatPackWorseThanTheyWereWritten() throws IOException {
+        // A large and a small record fill each 1 KB segment; kept apart per session, the large ones
+        // need a segment each and the small ones more on top, which the sealed range has no ids for
+        ChatHistoryLog log = open(DataSize.ofKilobytes(1));
+        for (int i = 0; i < 12; i++) {
+            log.append("large", message(String.format("%02d", i) + "L".repeat(560)));
+            log.append("small", message(String.format("%02d", i) + "s".repeat(260)));
+        }
+        log.append("cleared", message("bye"));
+        log.clear("cleared");
+
+        log.compact();
+
+        // The rewrite took place: the first segment now holds records of one session only
+        assertThat(recordLengths(segmentFiles().get(0))).hasSize(1);
+        List<String> large = contents(log.read("large", 0, 100));
+        List<String> small = contents(log.read("small", 0, 100));
+        assertThat(large).hasSize(12).allMatch(content -> content.endsWith("L".repeat(560)));
+        assertThat(small).hasSize(12).allMatch(content -> content.endsWith("s".repeat(260)));
+        assertThat(large.get(11)).startsWith("11");
+        assertThat(small.get(0)).startsWith("00");
+
+        log.close();
+        opened.clear();
+        ChatHistoryLog reopened = open(DataSize.ofKilobytes(1));
+        assertThat(contents(reopened.read("large", 0, 100))).isEqualTo(large);
+        assertThat(contents(reopened.read("small", 0, 100))).isEqualTo(small);
+    }
+
+    @Test
+    void recoveryFromACompactionInterruptedDuringRenamesKeepsEveryRecord() throws IOException {
+        ChatHistoryLog log = open(DataSize.ofKilobytes(1));
+        for (int i = 0; i < 20; i++) {
+            log.append("kept", message(String.format("kept %02d ", i) + "k".repeat(120)));
+            log.append("cleared", message("x".repeat(200)));
+        }
+        log.clear("cleared");
+        int lastId = segmentIds().get(segmentIds().size() - 1);
+        log.compact();
+        List<String> kept = contents(log.read("kept", 0, 100));
+        log.close();
+        opened.clear();
+
+        // The state a crash leaves after the old segments were deleted and the first output was renamed
+        List<Integer> output = segmentIds().stream().filter(id -> id <= lastId).toList();
+        assertThat(output).hasSizeGreaterThanOrEqualTo(2);
+        Path second = directory.resolve(String.format("%010d.log", output.get(1)));
+        Files.move(second, directory.resolve(String.format("%010d.compact", output.get(1))));
+        Files.writeString(directory.resolve("compaction.marker"), output.get(0) + " " + lastId + " " + output.size());
+
+        ChatHistoryLog reopened = open(DataSize.ofKilobytes(1));
+        assertThat(Files.exists(directory.resolve("compaction.marker"))).isFalse();
+        assertThat(contents(reopened.read("kept", 0, 100))).hasSize(20).isEqualTo(kept);
+        assertThat(reopened.size("cleared")).isZero();
+    }
+
+    private ChatHistoryLog open(DataSize segmentSize) throws IOException {
+        ChatHistoryProperties properties = new ChatHistoryProperties();
+        ChatHistoryProperties.Persistence persistence = properties.getPersistence();
+        persistence.setEnabled(true);
+        persistence.setDirectory(directory.toString());
+        persistence.setSegmentSize(segmentSize);
+        // Background tasks stay out of the way; the tests flush and compact explicitly
+        persistence.setFsyncInterval(Duration.ofHours(1));
+        persistence.setCompactionInterval(Duration.ofHours(1));
+        ChatHistoryLog log = new ChatHistoryLog(properties);
+        log.open();
+        opened.add(log);
+        return log;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private List<Integer> segmentIds() throws IOException {
+        return segmentFiles().stream()
+                .map(path -> Integer.parseInt(path.getFileName().toString().replace(".log", "")))
+                .toList();
+    }
+
+    private long totalSize() throws IOException {
+        long total = 0;
+        for (Path segment : segmentFiles()) {
+            total += Files.size(segment);
+        }
+        return total;
+    }
+
+    /**
+     * Offsets of the records of a segment, following the length prefixes up to the zero end marker
+     */
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<Integer> offsets = new ArrayList<>();
+        int offset = 0;
+        while (offset + 8 <= buffer.capacity() && buffer.getInt(offset) > 0) {
+            offsets.add(offset);
+            offset += 8 + buffer.getInt(offset);
+        }
+        return offsets;
+    }
+
+    private static Set<Integer> recordLengths(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        Set<Integer> lengths = new HashSet<>();
+        for (int offset : recordOffsets(segment)) {
+            lengths.add(buffer.getInt(offset));
+        }
+        return lengths;
+    }
+
+    private static ChatMessage message(String content) {
+        return new ChatMessage(content, "user", "tinyllama");
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Routing over two stub Ollama servers that list one model and answer {@code /api/version}
+ */
+class BackendPoolTest {
+
+    private final Map<String, HttpServer> servers = new HashMap<>();
+    private BackendPool pool;
+
+    @BeforeEach
+    void startServers() throws IOException {
+        for (int i = 0; i < 2; i++) {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/api/tags", exchange -> respond(exchange, "{\"models\":[{\"name\":\"tinyllama:latest\"}]}"));
+            server.createContext("/api/version", exchange -> respond(exchange, "{\"version\":\"0.6.0\"}"));
+            server.start();
+            servers.put("http://localhost:" + server.getAddress().getPort(), server);
+        }
+
+        OllamaProperties properties = new OllamaProperties();
+        properties.setBackends(List.copyOf(servers.keySet()));
+        properties.setPullModels(List.of("tinyllama"));
+        properties.getRouting().setUnhealthyThreshold(1);
+        pool = new BackendPool(WebClient.create(), new ModelRegistry(properties), properties);
+    }
+
+    @AfterEach
+    void stopServers() {
+        servers.values().forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void keepsASessionOnTheBackendThatServedIt() {
+        String first = call("session");
+        for (int i = 0; i < 10; i++) {
+            assertThat(call("session")).isEqualTo(first);
+        }
+    }
+
+    @Test
+    void movesASessionToAHealthyBackendWhenItsBackendGoesDown() {
+        String pinned = call("session");
+        servers.get(pinned).stop(0);
+
+        // The call in flight fails, and its connection error takes the backend out of rotation
+        assertThatThrownBy(() -> call("session")).isInstanceOf(WebClientRequestException.class);
+        assertThat(backend(pinned).isHealthy()).isFalse();
+
+        String moved = call("session");
+        assertThat(moved).isNotEqualTo(pinned);
+        assertThat(call("session")).isEqualTo(moved);
+    }
+
+    @Test
+    void failsFastWhenNoBackendIsHealthy() {
+        servers.values().forEach(server -> server.stop(0));
+
+        assertThat(pool.isAnyBackendUp().block()).isFalse();
+        assertThatThrownBy(() -> call("session")).isInstanceOf(OllamaUnavailableException.class);
+    }
+
+    @Test
+    void rejectsAModelThatIsNeitherInstalledNorPulledOnDemand() {
+        assertThatThrownBy(() -> pool.execute("made-up", "session", backend -> Mono.just("never")).block())
+                .isInstanceOf(UnknownModelException.class);
+    }
+
+    /**
+     * Route a call for the model and return the name of the backend that served it
+     */
+    private String call(String sessionId) {
+        Function<OllamaBackend, Mono<String>> version = backend -> backend.webClient()
+                .get()
+                .uri("/api/version")
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(body -> backend.getName());
+        return pool.execute("tinyllama", sessionId, version).block(Duration.ofSeconds(5));
+    }
+
+    private OllamaBackend backend(String name) {
+        return pool.getBackends().stream().filter(backend -> backend.getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static void respond(HttpExchange exchange, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.agent.AgentRegistry;
+import com.example.chatbot.config.ChatAgentProperties;
+import com.example.chatbot.config.ChatBatchProperties;
+import com.example.chatbot.config.ChatHistoryProperties;
+import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.dto.ChatRequest;
+import com.example.chatbot.dto.ChatResponse;
+import com.example.chatbot.model.ChatMessage;
+import com.example.chatbot.model.GenerationResult;
+import com.example.chatbot.persistence.ChatHistoryLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A turn joins the history only together with its answer
+ */
+class ChatServiceTest {
+
+    private static final String SESSION = "session-1";
+
+    private final OllamaService ollamaService = mock(OllamaService.class);
+    private final ConversationSummarizer summarizer = mock(ConversationSummarizer.class);
+    private final AgentRegistry agentRegistry = mock(AgentRegistry.class);
+    private final ChatAgentProperties agentProperties = new ChatAgentProperties();
+    private ChatHistoryStore chatHistory;
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<ChatHistoryLog> noLog = mock(ObjectProvider.class);
+        chatHistory = new ChatHistoryStore(new ChatHistoryProperties(), noLog);
+        when(summarizer.promptFor(anyString(), anyString(), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        chatService = new ChatService(ollamaService, new OllamaProperties(), chatHistory, new ChatBatchProperties(),
+                agentRegistry, agentProperties, summarizer);
+    }
+
+    @Test
+    void answeredTurnRecordsQuestionThenAnswer() {
+        when(ollamaService.generate(eq(SESSION), anyString(), anyString(), isNull(), isNull()))
+                .thenReturn(Mono.just(new GenerationResult("hi there", new int[] {1, 2}, 0, 0, 0, 0, 0, 0)));
+
+        ChatResponse response = chatService.processMessage(request("hello")).block();
+
+        assertThat(response.isSuccess()).isTrue();
+        assertThat(chatHistory.recent(SESSION, null)).extracting(ChatMessage::getRole, ChatMessage::getContent)
+                .containsExactly(tuple("user", "hello"),
+                        tuple("assistant", "hi there"));
+    }
+
+    @Test
+    void semanticHitLeavesTheSessionWithoutContext() {
+        // Another conversation's answer, with the context of its own prompt
+        SemanticCache semanticCache = new SemanticCache(new OllamaProperties());
+        float[] embedding = {0.6f, 0.8f};
+        semanticCache.put("tinyllama", null, embedding,
+                new GenerationResult("shared answer", new int[] {7, 7, 7}, 0, 0, 0, 0, 0, 0));
+        when(ollamaService.generate(eq(SESSION), anyString(), anyString(), isNull(), isNull()))
+                .thenReturn(Mono.just(semanticCache.lookup("tinyllama", null, embedding)));
+
+        chatService.processMessage(request("hello")).block();
+
+        assertThat(chatHistory.getContext(SESSION, "tinyllama")).isNull();
+    }
+
+    @Test
+    void summarizedPromptBypassesTheSharedCaches() {
+        when(summarizer.promptFor(anyString(), anyString(), any()))
+                .thenReturn("Summary of our conversation so far:\n...\nhello");
+        when(ollamaService.generateUncached(eq(SESSION), anyString(), anyString(), isNull()))
+                .thenReturn(Mono.just(new GenerationResult("answer", null, 0, 0, 0, 0, 0, 0)));
+
+        assertThat(chatService.processMessage(request("hello")).block().isSuccess()).isTrue();
+        verify(ollamaService, never()).generate(any(), anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void rejectedTurnLeavesNoHistory() {
+        when(ollamaService.generate(eq(SESSION), anyString(), anyString(), isNull(), isNull()))
+                .thenReturn(Mono.error(new AdmissionRejectedException("tinyllama", Duration.ofSeconds(1), "queue full")));
+
+        assertThatThrownBy(() -> chatService.processMessage(request("hello")).block())
+                .isInstanceOf(AdmissionRejectedException.class);
+        assertThat(chatHistory.recent(SESSION, null)).isEmpty();
+    }
+
+    @Test
+    void failedTurnLeavesNoHistory() {
+        when(ollamaService.generate(eq(SESSION), anyString(), anyString(), isNull(), isNull()))
+                .thenReturn(Mono.error(new IllegalStateException("boom")));
+
+        ChatResponse response = chatService.processMessage(request("hello")).block();
+
+        assertThat(response.isSuccess()).isFalse();
+        assertThat(chatHistory.recent(SESSION, null)).isEmpty();
+    }
+
+    @Test
+    void brokenStreamLeavesNoHistory() {
+        when(ollamaService.generateResponseStream(eq(SESSION), anyString(), anyString(), isNull(), isNull(), any()))
+                .thenReturn(Flux.concat(Flux.just("hi "), Flux.error(new IllegalStateException("boom"))));
+
+        assertThatThrownBy(() -> chatService.streamMessage(request("hello")).blockLast())
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(chatHistory.recent(SESSION, null)).isEmpty();
+    }
+
+    @Test
+    void completedStreamRecordsQuestionThenAnswer() {
+        when(ollamaService.generateResponseStream(eq(SESSION), anyString(), anyString(), isNull(), isNull(), any()))
+                .thenReturn(Flux.just("hi ", "there"));
+
+        chatService.streamMessage(request("hello")).blockLast();
+
+        assertThat(chatHistory.recent(SESSION, null)).extracting(ChatMessage::getContent)
+                .containsExactly("hello", "hi there");
+    }
+
+    @Test
+    void streamGoesThroughTheAgentWhenItIsEnabled() {
+        agentProperties.setEnabled(true);
+        when(agentRegistry.chat(SESSION, "tinyllama", "hello")).thenReturn(Mono.just("It is noon."));
+
+        assertThat(chatService.streamMessage(request("hello")).collectList().block()).containsExactly("It is noon.");
+        assertThat(chatHistory.recent(SESSION, null)).extracting(ChatMessage::getContent)
+                .containsExactly("hello", "It is noon.");
+        verify(ollamaService, never()).generateResponseStream(any(), anyString(), anyString(), any(), any(), any());
+    }
+
+    private static ChatRequest request(String message) {
+        ChatRequest request = new ChatRequest(message, "tinyllama");
+        request.setSessionId(SESSION);
+        return request;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ModelConcurrencyLimiterTest {
+
+    private static final String MODEL = "tinyllama:latest@http://localhost:11434";
+
+    @Test
+    void queuesCallsOverTheLimitAndRunsThemInOrder() throws Exception {
+        ModelConcurrencyLimiter limiter = limiter(1, 2, Duration.ofSeconds(30));
+        Sinks.One<String> first = Sinks.one();
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<String> running = limiter.execute(MODEL, () -> first.asMono()).toFuture();
+        CompletableFuture<String> queued = limiter.execute(MODEL, () -> {
+            started.incrementAndGet();
+            return Mono.just("second");
+        }).toFuture();
+
+        assertThat(started).hasValue(0);
+        assertThat(stats(limiter)).containsEntry("inFlight", 1).containsEntry("queued", 1);
+
+        first.tryEmitValue("first");
+        assertThat(running.get(1, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("second");
+        assertThat(stats(limiter)).containsEntry("inFlight", 0).containsEntry("admitted", 2L);
+    }
+
+    @Test
+    void rejectsAtOnceWhenTheQueueIsFull() {
+        ModelConcurrencyLimiter limiter = limiter(1, 1, Duration.ofSeconds(30));
+        limiter.execute(MODEL, Mono::never).subscribe();
+        limiter.execute(MODEL, Mono::never).subscribe();
+
+        assertThatThrownBy(() -> limiter.execute(MODEL, () -> Mono.just("third")).block(Duration.ofSeconds(1)))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .hasMessageContaining("wait queue is full");
+        assertThat(stats(limiter)).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    void rejectsACallThatWaitedTooLongAndFreesItsPlace() {
+        ModelConcurrencyLimiter limiter = limiter(1, 1, Duration.ofMillis(100));
+        Sinks.One<String> first = Sinks.one();
+        limiter.execute(MODEL, first::asMono).subscribe();
+
+        CompletableFuture<String> waiting = limiter.execute(MODEL, () -> Mono.just("late")).toFuture();
+
+        assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOf(AdmissionRejectedException.class)
+                .hasMessageContaining("timed out");
+        assertThat(stats(limiter)).containsEntry("timedOut", 1L).containsEntry("queued", 0);
+
+        // The timed out call never ran and holds no slot: once the first ends, the next runs at once
+        first.tryEmitValue("first");
+        assertThat(limiter.execute(MODEL, () -> Mono.just("next")).block(Duration.ofSeconds(1))).isEqualTo("next");
+    }
+
+    @Test
+    void cancelledCallHandsItsSlotBack() {
+        ModelConcurrencyLimiter limiter = limiter(1, 1, Duration.ofSeconds(30));
+        limiter.execute(MODEL, Mono::never).subscribe().dispose();
+
+        assertThat(limiter.execute(MODEL, () -> Mono.just("next")).block(Duration.ofSeconds(1))).isEqualTo("next");
+        assertThat(stats(limiter)).containsEntry("inFlight", 0);
+    }
+
+    private static ModelConcurrencyLimiter limiter(int maxConcurrent, int queueSize, Duration queueTimeout) {
+        OllamaProperties properties = new OllamaProperties();
+        properties.getAdmission().setMaxConcurrent(maxConcurrent);
+        properties.getAdmission().setQueueSize(queueSize);
+        properties.getAdmission().setQueueTimeout(queueTimeout);
+        return new ModelConcurrencyLimiter(properties);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(ModelConcurrencyLimiter limiter) {
+        Map<String, Object> models = (Map<String, Object>) limiter.getStats().get("models");
+        return (Map<String, Object>) models.get(MODEL);
+    }
+}
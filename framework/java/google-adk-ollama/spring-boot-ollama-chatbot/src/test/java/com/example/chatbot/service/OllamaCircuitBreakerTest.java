@@ -0,0 +1,128 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OllamaCircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailuresAndRejectsCalls() {
+        OllamaCircuitBreaker breaker = breaker(3, Duration.ofMinutes(1));
+        for (int i = 0; i < 3; i++) {
+            fail(breaker);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> breaker.protect(Mono.just("answer")).block())
+                .isInstanceOf(OllamaUnavailableException.class);
+        assertThat(breaker.getStats()).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    void successResetsTheFailureCount() {
+        OllamaCircuitBreaker breaker = breaker(3, Duration.ofMinutes(1));
+        fail(breaker);
+        fail(breaker);
+        succeed(breaker);
+        fail(breaker);
+        fail(breaker);
+
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void errorsThatSayNothingAboutOllamaNeitherCountNorReset() {
+        OllamaCircuitBreaker breaker = breaker(3, Duration.ofMinutes(1));
+        fail(breaker);
+        fail(breaker);
+        reject(breaker, new AdmissionRejectedException("tinyllama", Duration.ofSeconds(1), "queue is full"));
+        reject(breaker, WebClientResponseException.create(404, "Not Found", null, null, null));
+
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.CLOSED);
+        fail(breaker);
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void closesOnceEveryProbeSucceeded() {
+        OllamaCircuitBreaker breaker = breaker(1, Duration.ZERO);
+        fail(breaker);
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.HALF_OPEN);
+
+        succeed(breaker);
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.HALF_OPEN);
+        succeed(breaker);
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void opensAgainWhenAProbeFails() {
+        OllamaCircuitBreaker breaker = breaker(1, Duration.ofMillis(50));
+        fail(breaker);
+        awaitHalfOpen(breaker);
+
+        succeed(breaker);
+        fail(breaker);
+
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void probeEndingInANonFailureErrorOnlyFreesItsSlot() {
+        OllamaCircuitBreaker breaker = breaker(1, Duration.ZERO);
+        fail(breaker);
+
+        // Two probes: a rejected one must neither close nor reopen the breaker
+        Disposable inFlight = breaker.protect(Mono.never()).subscribe();
+        reject(breaker, new AdmissionRejectedException("tinyllama", Duration.ofSeconds(1), "queue is full"));
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.HALF_OPEN);
+
+        // Its slot went to the next call; the slot of the call in flight is taken
+        succeed(breaker);
+        assertThatThrownBy(() -> breaker.protect(Mono.just("answer")).block())
+                .isInstanceOf(OllamaUnavailableException.class);
+
+        // Cancelling the call in flight frees its slot too, and the next success closes the breaker
+        inFlight.dispose();
+        succeed(breaker);
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.CLOSED);
+    }
+
+    private static OllamaCircuitBreaker breaker(int failureThreshold, Duration openDuration) {
+        OllamaProperties properties = new OllamaProperties();
+        properties.getCircuitBreaker().setFailureThreshold(failureThreshold);
+        properties.getCircuitBreaker().setOpenDuration(openDuration);
+        properties.getCircuitBreaker().setHalfOpenProbes(2);
+        return new OllamaCircuitBreaker(properties, new SimpleMeterRegistry());
+    }
+
+    private static void succeed(OllamaCircuitBreaker breaker) {
+        assertThat(breaker.protect(Mono.just("answer")).block()).isEqualTo("answer");
+    }
+
+    private static void fail(OllamaCircuitBreaker breaker) {
+        reject(breaker, new TimeoutException("no answer"));
+    }
+
+    private static void reject(OllamaCircuitBreaker breaker, Throwable error) {
+        assertThatThrownBy(() -> breaker.protect(Mono.error(error)).block()).isNotNull();
+    }
+
+    private static void awaitHalfOpen(OllamaCircuitBreaker breaker) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (breaker.getState() != OllamaCircuitBreaker.State.HALF_OPEN && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(breaker.getState()).isEqualTo(OllamaCircuitBreaker.State.HALF_OPEN);
+    }
+}
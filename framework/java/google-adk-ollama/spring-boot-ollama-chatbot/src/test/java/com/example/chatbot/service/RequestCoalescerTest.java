@@ -0,0 +1,80 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.model.GenerationResult;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCoalescerTest {
+
+    private static final GenerationKey KEY = GenerationKey.of("tinyllama", "Why is the sky blue?", Map.of());
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    @Test
+    void sharesOneUpstreamCallAmongIdenticalRequests() throws Exception {
+        Sinks.One<GenerationResult> upstream = Sinks.one();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<GenerationResult> first = coalescer.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return upstream.asMono();
+        }).toFuture();
+        CompletableFuture<GenerationResult> second = coalescer.execute(KEY, () -> {
+            calls.incrementAndGet();
+            return upstream.asMono();
+        }).toFuture();
+
+        GenerationResult result = result("Rayleigh scattering");
+        upstream.tryEmitValue(result);
+        assertThat(first.get(1, TimeUnit.SECONDS)).isSameAs(result);
+        assertThat(second.get(1, TimeUnit.SECONDS)).isSameAs(result);
+        assertThat(calls).hasValue(1);
+        assertThat(coalescer.getStats()).containsEntry("coalesced", 1L).containsEntry("inFlight", 0);
+    }
+
+    @Test
+    void cancelsUpstreamOnlyAfterTheLastCallerCancelled() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<GenerationResult> upstream = Mono.<GenerationResult>never().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = coalescer.execute(KEY, () -> upstream).subscribe();
+        Disposable second = coalescer.execute(KEY, () -> upstream).subscribe();
+
+        first.dispose();
+        assertThat(cancelled).isFalse();
+        assertThat(coalescer.getStats()).containsEntry("inFlight", 1);
+
+        second.dispose();
+        assertThat(cancelled).isTrue();
+        assertThat(coalescer.getStats()).containsEntry("inFlight", 0);
+    }
+
+    @Test
+    void startsAFreshCallOnceTheSharedOneFinished() {
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            GenerationResult answer = coalescer.execute(KEY, () -> {
+                calls.incrementAndGet();
+                return Mono.just(result("answer"));
+            }).block();
+            assertThat(answer.getResponse()).isEqualTo("answer");
+        }
+
+        assertThat(calls).hasValue(2);
+    }
+
+    private static GenerationResult result(String response) {
+        return new GenerationResult(response, null, 0, 0, 0, 0, 0, 0);
+    }
+}
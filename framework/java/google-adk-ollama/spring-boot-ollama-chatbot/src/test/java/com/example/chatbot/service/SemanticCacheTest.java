@@ -0,0 +1,56 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.OllamaProperties;
+import com.example.chatbot.model.GenerationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticCacheTest {
+
+    private static final float[] EMBEDDING = {0.6f, 0.8f, 0f, 0f};
+
+    private final SemanticCache cache = new SemanticCache(new OllamaProperties());
+
+    @Test
+    void sharesOnePartitionAcrossOptionsThatCannotChangeAGreedyAnswer() {
+        for (int seed = 0; seed < 100; seed++) {
+            cache.put("llama3", Map.of("temperature", 0, "seed", seed, "top_k", seed), EMBEDDING, result("cached"));
+        }
+
+        assertThat(cache.getStats()).containsEntry("partitions", 1L).containsEntry("entries", 1);
+        assertThat(cache.lookup("llama3", Map.of("seed", 7), EMBEDDING).getResponse()).isEqualTo("cached");
+    }
+
+    @Test
+    void separatesOptionsThatChangeTheAnswer() {
+        cache.put("llama3", Map.of("num_predict", 16), EMBEDDING, result("short"));
+
+        assertThat(cache.lookup("llama3", Map.of(), EMBEDDING)).isNull();
+        assertThat(cache.lookup("llama3", Map.of("num_predict", 16.0), EMBEDDING).getResponse()).isEqualTo("short");
+        assertThat(cache.lookup("mistral", Map.of("num_predict", 16), EMBEDDING)).isNull();
+    }
+
+    @Test
+    void newPartitionAllocatesOnlyItsInitialSlots() {
+        cache.put("llama3", null, EMBEDDING, result("cached"));
+
+        assertThat(cache.getStats().get("offHeapBytes"))
+                .isEqualTo((long) VectorIndex.INITIAL_SLOTS * EMBEDDING.length * Float.BYTES);
+    }
+
+    @Test
+    void storesAnswersWithoutTheirContext() {
+        cache.put("llama3", null, EMBEDDING, new GenerationResult("cached", new int[] {1, 2, 3}, 0, 0, 0, 0, 0, 0));
+
+        GenerationResult hit = cache.lookup("llama3", null, EMBEDDING);
+        assertThat(hit.getResponse()).isEqualTo("cached");
+        assertThat(hit.getContext()).isNull();
+    }
+
+    private static GenerationResult result(String response) {
+        return new GenerationResult(response, null, 0, 0, 0, 0, 0, 0);
+    }
+}
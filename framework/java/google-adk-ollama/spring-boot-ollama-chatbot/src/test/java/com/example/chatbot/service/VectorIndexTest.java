@@ -0,0 +1,56 @@
+package com.example.chatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VectorIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    void growsStorageUpToCapacityAndKeepsEarlierEntries() {
+        int capacity = VectorIndex.INITIAL_SLOTS * 3;
+        VectorIndex<Integer> index = new VectorIndex<>(DIMENSIONS, capacity, 60_000, 42L);
+        float[][] vectors = new float[capacity][];
+        Random random = new Random(7);
+        for (int i = 0; i < capacity; i++) {
+            vectors[i] = unitVector(random);
+            index.add(vectors[i], i);
+        }
+
+        assertThat(index.size()).isEqualTo(capacity);
+        assertThat(index.offHeapBytes()).isEqualTo((long) capacity * DIMENSIONS * Float.BYTES);
+        for (int i = 0; i < capacity; i++) {
+            assertThat(index.search(vectors[i], 0.999)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void evictsOnceFull() {
+        VectorIndex<Integer> index = new VectorIndex<>(DIMENSIONS, 4, 60_000, 42L);
+        Random random = new Random(7);
+        for (int i = 0; i < 10; i++) {
+            index.add(unitVector(random), i);
+        }
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.evictions()).isEqualTo(6);
+        assertThat(index.offHeapBytes()).isEqualTo(4L * DIMENSIONS * Float.BYTES);
+    }
+
+    private static float[] unitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
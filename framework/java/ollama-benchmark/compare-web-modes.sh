@@ -0,0 +1,51 @@
+#!/usr/bin/env bash
+# Load comparison of the ADK chatbot built for the servlet (Tomcat) and the reactive (Netty) runtime.
+# Both run against the stub Ollama with long generations and admission limits raised out of the way,
+# so the number of requests held open at once is bounded only by the web runtime.
+#
+#   ./compare-web-modes.sh [concurrency] [duration-seconds]
+set -euo pipefail
+
+CONCURRENCY=${1:-2000}
+DURATION=${2:-60}
+CHATBOT=../google-adk-ollama/spring-boot-ollama-chatbot
+OUT=target/web-modes
+mkdir -p "$OUT"
+
+for mode in servlet reactive; do
+    mvn -q -f "$CHATBOT/pom.xml" -P"$mode" clean package -DskipTests=true
+    cp "$CHATBOT"/target/*-exec.jar "$OUT/chatbot-$mode.jar"
+done
+mvn -q -f "$CHATBOT/pom.xml" install -DskipTests=true
+mvn -q clean package
+
+# About 6.5 s per answer: 250 ms to the first token, then 256 tokens at 40 tokens/s
+java -cp target/benchmarks.jar com.example.benchmark.stub.StubOllamaServer \
+    --port 11434 --ttft-ms 250 --tokens-per-second 40 --tokens 256 --parallel 100000 > "$OUT/stub.log" 2>&1 &
+STUB=$!
+trap 'kill $STUB 2>/dev/null || true' EXIT
+
+for mode in servlet reactive; do
+    java -jar "$OUT/chatbot-$mode.jar" \
+        --ollama.base-url=http://localhost:11434 \
+        --ollama.admission.max-concurrent=100000 \
+        --ollama.admission.queue-size=100000 \
+        --ollama.connection.max-connections=100000 \
+        --ollama.connection.pending-acquire-max-count=100000 \
+        --ollama.request-coalescing=false \
+        > "$OUT/chatbot-$mode.log" 2>&1 &
+    APP=$!
+    until curl -sf http://localhost:8080/health > /dev/null; do sleep 1; done
+
+    echo "== $mode =="
+    # Distinct prompts, so no two requests share a generation
+    java -cp target/benchmarks.jar com.example.benchmark.load.LoadGenerator \
+        --url http://localhost:8080/api/chat --format adk --mode closed \
+        --concurrency "$CONCURRENCY" --prompts 1000000 --sessions "$CONCURRENCY" \
+        --warmup 15 --duration "$DURATION" --hgrm "$OUT/$mode.hgrm"
+    echo "peak live threads: $(curl -s http://localhost:8080/actuator/metrics/jvm.threads.peak | grep -o '"value":[0-9.]*' | cut -d: -f2)"
+    echo "resident memory kB: $(grep VmRSS /proc/$APP/status | awk '{print $2}')"
+
+    kill $APP
+    wait $APP 2>/dev/null || true
+done
@@ -0,0 +1 @@
+mvn -f ../google-adk-ollama/spring-boot-ollama-chatbot/pom.xml install -DskipTests=true && mvn -f ../spring-ai-ollama/pom.xml install -DskipTests=true && mvn clean package && java -jar target/benchmarks.jar
@@ -0,0 +1,256 @@
+package com.example.benchmark.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives {@code POST /api/chat} of one of the chat applications and reports throughput and latency percentiles.
+ *
+ * <p>Closed-loop mode keeps {@code --concurrency} users busy, each sending its next request as soon as the
+ * previous one returns. Open-loop mode sends {@code --rate} requests per second on a fixed schedule no matter
+ * how slowly the server answers, and measures each request from the moment it was due, so a stalled server
+ * shows up in the percentiles instead of silently lowering the load (coordinated omission).
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.benchmark.load.LoadGenerator \
+ *     --url http://localhost:8080/api/chat --format adk --mode open --rate 20 --duration 60
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Options options;
+    private final HttpClient httpClient;
+    // Runs the open-loop requests; the HTTP client keeps its own executor so draining this one is safe
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile boolean measuring;
+
+    public LoadGenerator(Options options) {
+        this.options = options;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Histogram histogram = new LoadGenerator(options).run();
+        if (options.histogramFile != null) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(options.histogramFile))) {
+                histogram.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Warm up, then measure for the configured duration; returns the latency histogram in microseconds
+     */
+    public Histogram run() throws InterruptedException, IOException {
+        System.out.printf("%s-loop load on %s (%s) for %ds after %ds warm-up%n",
+                options.mode, options.url, options.format, options.durationSeconds, options.warmupSeconds);
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+
+        Thread phases = Thread.ofPlatform().start(() -> {
+            LockSupport.parkNanos(measureFrom - System.nanoTime());
+            recorder.getIntervalHistogram();
+            completed.set(0);
+            failed.set(0);
+            rejected.set(0);
+            measuring = true;
+        });
+
+        if ("open".equals(options.mode)) {
+            runOpenLoop(start, end);
+        } else {
+            runClosedLoop(end);
+        }
+        phases.join();
+        measuring = false;
+
+        Histogram histogram = recorder.getIntervalHistogram();
+        report(histogram);
+        executor.shutdownNow();
+        return histogram;
+    }
+
+    private void runClosedLoop(long end) throws InterruptedException {
+        Thread[] users = new Thread[options.concurrency];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = Thread.ofVirtual().start(() -> {
+                while (System.nanoTime() < end) {
+                    send(System.nanoTime());
+                    if (options.thinkMillis > 0) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(options.thinkMillis));
+                    }
+                }
+            });
+        }
+        for (Thread user : users) {
+            user.join();
+        }
+    }
+
+    private void runOpenLoop(long start, long end) throws InterruptedException {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / options.rate);
+        long due = start;
+        while (due < end) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intendedStart = due;
+            executor.execute(() -> send(intendedStart));
+            due += intervalNanos;
+        }
+        // Let requests that are still running finish so their latency is counted
+        executor.shutdown();
+        executor.awaitTermination(options.drainSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Send one request and record its latency from {@code intendedStartNanos}
+     */
+    private void send(long intendedStartNanos) {
+        long n = sequence.getAndIncrement();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(options.url))
+                .timeout(Duration.ofSeconds(options.timeoutSeconds))
+                .header("Content-Type", "rag".equals(options.format) ? "text/plain" : "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body(n)))
+                .build();
+        boolean ok;
+        boolean wasRejected = false;
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            wasRejected = response.statusCode() == 429;
+            // The ADK app reports generation failures as 200 with "success": false
+            ok = response.statusCode() / 100 == 2 && !response.body().contains("\"success\":false");
+        } catch (IOException e) {
+            ok = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStartNanos);
+        boolean counted = measuring;
+        if (ok) {
+            recorder.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            if (counted) {
+                completed.incrementAndGet();
+            }
+        } else if (counted) {
+            (wasRejected ? rejected : failed).incrementAndGet();
+        }
+    }
+
+    /**
+     * Request body in the shape each application's /api/chat expects. {@code --prompts} distinct prompts are
+     * cycled through so that caches see a realistic mix of repeats.
+     */
+    private String body(long n) {
+        String prompt = "Question " + (n % options.prompts) + ": explain what a load test measures.";
+        return switch (options.format) {
+            case "spring-ai" -> "{\"message\":\"" + prompt + "\"}";
+            case "rag" -> prompt;
+            default -> "{\"message\":\"" + prompt + "\",\"model\":\"" + options.model
+                    + "\",\"sessionId\":\"load-" + (n % options.sessions) + "\"}";
+        };
+    }
+
+    private void report(Histogram histogram) {
+        double seconds = options.durationSeconds;
+        System.out.printf("requests ok %d, failed %d, rejected (429) %d%n", completed.get(), failed.get(), rejected.get());
+        System.out.printf("throughput %.1f req/s%n", completed.get() / seconds);
+        System.out.printf("latency ms: p50 %.1f  p90 %.1f  p99 %.1f  p99.9 %.1f  max %.1f  mean %.1f%n",
+                ms(histogram.getValueAtPercentile(50)),
+                ms(histogram.getValueAtPercentile(90)),
+                ms(histogram.getValueAtPercentile(99)),
+                ms(histogram.getValueAtPercentile(99.9)),
+                ms(histogram.getMaxValue()),
+                histogram.getMean() / 1000.0);
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Command line settings; every flag takes a value, e.g. {@code --concurrency 16}
+     */
+    public static final class Options {
+
+        String url = "http://localhost:8080/api/chat";
+        String format = "adk";
+        String mode = "closed";
+        String model = "tinyllama";
+        int concurrency = 8;
+        double rate = 10;
+        long thinkMillis = 0;
+        long warmupSeconds = 10;
+        long durationSeconds = 60;
+        long drainSeconds = 60;
+        long timeoutSeconds = 120;
+        int prompts = 100;
+        int sessions = 50;
+        String histogramFile;
+
+        public static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--url" -> options.url = value;
+                    case "--format" -> options.format = value;
+                    case "--mode" -> options.mode = value;
+                    case "--model" -> options.model = value;
+                    case "--concurrency" -> options.concurrency = Integer.parseInt(value);
+                    case "--rate" -> options.rate = Double.parseDouble(value);
+                    case "--think-ms" -> options.thinkMillis = Long.parseLong(value);
+                    case "--warmup" -> options.warmupSeconds = Long.parseLong(value);
+                    case "--duration" -> options.durationSeconds = Long.parseLong(value);
+                    case "--drain" -> options.drainSeconds = Long.parseLong(value);
+                    case "--timeout" -> options.timeoutSeconds = Long.parseLong(value);
+                    case "--prompts" -> options.prompts = Integer.parseInt(value);
+                    case "--sessions" -> options.sessions = Integer.parseInt(value);
+                    case "--hgrm" -> options.histogramFile = value;
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (args.length % 2 != 0) {
+                throw new IllegalArgumentException("Option " + args[args.length - 1] + " needs a value");
+            }
+            if (!options.mode.equals("open") && !options.mode.equals("closed")) {
+                throw new IllegalArgumentException("--mode must be open or closed");
+            }
+            if (!options.format.equals("adk") && !options.format.equals("spring-ai") && !options.format.equals("rag")) {
+                throw new IllegalArgumentException("--format must be adk, spring-ai or rag");
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.benchmark.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for an Ollama server with predictable timing, for load tests that must run offline.
+ *
+ * <p>Emulates {@code /api/generate} and {@code /api/chat} (streaming and non-streaming), {@code /api/tags},
+ * {@code /api/embeddings}, {@code /api/embed}, {@code /api/pull}, {@code /api/show} and {@code /api/version}.
+ * A generation waits {@code --ttft-ms} before its first token, then emits {@code --tokens} tokens at
+ * {@code --tokens-per-second}. At most {@code --parallel} generations run at once; the rest queue, as they
+ * do in Ollama. The first generation of each model additionally waits {@code --load-ms}.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.example.benchmark.stub.StubOllamaServer --port 11434 --tokens-per-second 50
+ * </pre>
+ */
+public final class StubOllamaServer {
+
+    private static final String[] WORDS = {
+            "The", " quick", " brown", " fox", " jumps", " over", " the", " lazy", " dog", ".",
+            " Local", " models", " answer", " questions", " without", " leaving", " the", " machine", "."
+    };
+
+    private final Options options;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> models = ConcurrentHashMap.newKeySet();
+    private final Set<String> loadedModels = ConcurrentHashMap.newKeySet();
+    private final Semaphore slots;
+    private HttpServer server;
+
+    public StubOllamaServer(Options options) {
+        this.options = options;
+        this.slots = new Semaphore(options.parallel, true);
+        for (String model : options.models) {
+            models.add(normalize(model));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = Options.parse(args);
+        StubOllamaServer stub = new StubOllamaServer(options);
+        stub.start();
+        System.out.printf("Stub Ollama listening on port %d (models %s, ttft %d ms, %.1f tokens/s, %d tokens, parallel %d)%n",
+                options.port, options.models, options.ttftMillis, options.tokensPerSecond, options.tokens, options.parallel);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(options.port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/api/version", exchange -> handle(exchange, this::version));
+        server.createContext("/api/tags", exchange -> handle(exchange, this::tags));
+        server.createContext("/api/show", exchange -> handle(exchange, this::show));
+        server.createContext("/api/pull", exchange -> handle(exchange, this::pull));
+        server.createContext("/api/ps", exchange -> handle(exchange, this::ps));
+        server.createContext("/api/generate", exchange -> handle(exchange, ex -> generate(ex, false)));
+        server.createContext("/api/chat", exchange -> handle(exchange, ex -> generate(ex, true)));
+        server.createContext("/api/embeddings", exchange -> handle(exchange, ex -> embed(ex, false)));
+        server.createContext("/api/embed", exchange -> handle(exchange, ex -> embed(ex, true)));
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void version(HttpExchange exchange) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode().put("version", "0.0.0-stub");
+        sendJson(exchange, 200, body);
+    }
+
+    private void tags(HttpExchange exchange) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode list = body.putArray("models");
+        for (String model : models) {
+            list.addObject()
+                    .put("name", model)
+                    .put("model", model)
+                    .put("modified_at", Instant.now().toString())
+                    .put("size", 637_700_138L)
+                    .put("digest", Integer.toHexString(model.hashCode()));
+        }
+        sendJson(exchange, 200, body);
+    }
+
+    private void show(HttpExchange exchange) throws IOException {
+        String model = normalize(modelName(readBody(exchange)));
+        if (!models.contains(model)) {
+            sendJson(exchange, 404, objectMapper.createObjectNode().put("error", "model '" + model + "' not found"));
+            return;
+        }
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("modelfile", "FROM " + model);
+        body.putObject("details").put("format", "gguf").put("family", "stub");
+        sendJson(exchange, 200, body);
+    }
+
+    private void pull(HttpExchange exchange) throws IOException {
+        JsonNode request = readBody(exchange);
+        String model = normalize(modelName(request));
+        if (!request.path("stream").asBoolean(true)) {
+            sleep(options.pullMillis);
+            models.add(model);
+            sendJson(exchange, 200, objectMapper.createObjectNode().put("status", "success"));
+            return;
+        }
+        // Like Ollama: progress lines while downloading, then "success"
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            String[] steps = {"pulling manifest", "pulling " + Integer.toHexString(model.hashCode()),
+                    "verifying sha256 digest", "writing manifest"};
+            for (String step : steps) {
+                out.write(objectMapper.writeValueAsBytes(objectMapper.createObjectNode().put("status", step)));
+                out.write('\n');
+                out.flush();
+                sleep(options.pullMillis / steps.length);
+            }
+            models.add(model);
+            out.write(objectMapper.writeValueAsBytes(objectMapper.createObjectNode().put("status", "success")));
+            out.write('\n');
+        }
+    }
+
+    private void ps(HttpExchange exchange) throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode list = body.putArray("models");
+        for (String model : loadedModels) {
+            list.addObject().put("name", model).put("model", model);
+        }
+        sendJson(exchange, 200, body);
+    }
+
+    /**
+     * {@code /api/generate} answers in {@code response}; {@code /api/chat} answers in {@code message.content}
+     */
+    private void generate(HttpExchange exchange, boolean chat) throws IOException {
+        JsonNode request = readBody(exchange);
+        String model = normalize(modelName(request));
+        if (!models.contains(model)) {
+            sendJson(exchange, 404, objectMapper.createObjectNode().put("error", "model '" + model + "' not found, try pulling it first"));
+            return;
+        }
+        if (!chat && !request.has("prompt")) {
+            load(exchange, model, request.path("keep_alive").asText(""));
+            return;
+        }
+        // Ollama streams unless told otherwise
+        boolean stream = request.path("stream").asBoolean(true);
+        int tokens = request.path("options").path("num_predict").asInt(options.tokens);
+        int promptTokens = Math.max(1, promptText(request, chat).length() / 4);
+        long startNanos = System.nanoTime();
+
+        slots.acquireUninterruptibly();
+        try {
+            long loadNanos = 0;
+            if (loadedModels.add(model) && options.loadMillis > 0) {
+                sleep(options.loadMillis);
+                loadNanos = TimeUnit.MILLISECONDS.toNanos(options.loadMillis);
+            }
+            sleep(options.ttftMillis);
+            long prefillNanos = TimeUnit.MILLISECONDS.toNanos(options.ttftMillis);
+            long tokenMillis = Math.round(1000 / options.tokensPerSecond);
+            long decodeStart = System.nanoTime();
+
+            if (stream) {
+                exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (int i = 0; i < tokens; i++) {
+                        if (i > 0) {
+                            sleep(tokenMillis);
+                        }
+                        ObjectNode chunk = chunk(model, chat, WORDS[i % WORDS.length], false);
+                        out.write(objectMapper.writeValueAsBytes(chunk));
+                        out.write('\n');
+                        out.flush();
+                    }
+                    ObjectNode done = chunk(model, chat, "", true);
+                    addStats(done, request, chat, promptTokens, tokens, loadNanos, prefillNanos,
+                            System.nanoTime() - decodeStart, System.nanoTime() - startNanos);
+                    out.write(objectMapper.writeValueAsBytes(done));
+                    out.write('\n');
+                }
+            } else {
+                sleep(tokenMillis * Math.max(0, tokens - 1));
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < tokens; i++) {
+                    text.append(WORDS[i % WORDS.length]);
+                }
+                ObjectNode body = chunk(model, chat, text.toString(), true);
+                addStats(body, request, chat, promptTokens, tokens, loadNanos, prefillNanos,
+                        System.nanoTime() - decodeStart, System.nanoTime() - startNanos);
+                sendJson(exchange, 200, body);
+            }
+        } finally {
+            slots.release();
+        }
+    }
+
+    /**
+     * A generate request without a prompt only loads the model, or unloads it with a keep_alive of zero
+     */
+    private void load(HttpExchange exchange, String model, String keepAlive) throws IOException {
+        if (keepAlive.equals("0") || keepAlive.equals("0s")) {
+            loadedModels.remove(model);
+        } else if (loadedModels.add(model)) {
+            sleep(options.loadMillis);
+        }
+        sendJson(exchange, 200, chunk(model, false, "", true));
+    }
+
+    private ObjectNode chunk(String model, boolean chat, String text, boolean done) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("model", model);
+        chunk.put("created_at", Instant.now().toString());
+        if (chat) {
+            chunk.putObject("message").put("role", "assistant").put("content", text);
+        } else {
+            chunk.put("response", text);
+        }
+        chunk.put("done", done);
+        return chunk;
+    }
+
+    private void addStats(ObjectNode body, JsonNode request, boolean chat, int promptTokens, int tokens,
+                          long loadNanos, long prefillNanos, long decodeNanos, long totalNanos) {
+        body.put("done_reason", "stop");
+        if (!chat) {
+            // The previous turn's context plus this turn's prompt and answer, like the real server
+            ArrayNode context = body.putArray("context");
+            request.path("context").forEach(context::add);
+            for (int i = 0; i < promptTokens + tokens; i++) {
+                context.add(i % 32_000);
+            }
+        }
+        body.put("total_duration", totalNanos);
+        body.put("load_duration", loadNanos);
+        body.put("prompt_eval_count", promptTokens);
+        body.put("prompt_eval_duration", prefillNanos);
+        body.put("eval_count", tokens);
+        body.put("eval_duration", decodeNanos);
+    }
+
+    /**
+     * {@code /api/embeddings} takes one {@code prompt}; {@code /api/embed} takes an {@code input} string or array
+     */
+    private void embed(HttpExchange exchange, boolean batch) throws IOException {
+        JsonNode request = readBody(exchange);
+        sleep(options.embedMillis);
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("model", modelName(request));
+        if (!batch) {
+            writeVector(body.putArray("embedding"), request.path("prompt").asText(""));
+        } else {
+            ArrayNode embeddings = body.putArray("embeddings");
+            JsonNode input = request.path("input");
+            List<String> texts = new ArrayList<>();
+            if (input.isArray()) {
+                input.forEach(text -> texts.add(text.asText()));
+            } else {
+                texts.add(input.asText(""));
+            }
+            for (String text : texts) {
+                writeVector(embeddings.addArray(), text);
+            }
+        }
+        sendJson(exchange, 200, body);
+    }
+
+    /**
+     * Same text, same vector, so semantic caches see exact repeats as perfect matches
+     */
+    private void writeVector(ArrayNode vector, String text) {
+        Random random = new Random(text.hashCode());
+        for (int i = 0; i < options.embeddingDimensions; i++) {
+            vector.add((float) random.nextGaussian());
+        }
+    }
+
+    private String promptText(JsonNode request, boolean chat) {
+        if (!chat) {
+            return request.path("prompt").asText("");
+        }
+        StringBuilder text = new StringBuilder();
+        request.path("messages").forEach(message -> text.append(message.path("content").asText("")));
+        return text.toString();
+    }
+
+    private String modelName(JsonNode request) {
+        String model = request.path("model").asText("");
+        return model.isEmpty() ? request.path("name").asText("") : model;
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readAllBytes();
+        return body.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+    }
+
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try {
+            handler.handle(exchange);
+        } catch (Exception e) {
+            try {
+                byte[] bytes = ("{\"error\":\"" + e.getClass().getSimpleName() + "\"}").getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(500, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            } catch (IOException ignored) {
+                // Client went away or headers were already sent
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String normalize(String model) {
+        String trimmed = model.trim();
+        return trimmed.indexOf(':') >= 0 ? trimmed : trimmed + ":latest";
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Command line settings; every flag takes a value, e.g. {@code --tokens-per-second 40}
+     */
+    public static final class Options {
+
+        int port = 11434;
+        List<String> models = new ArrayList<>(List.of("tinyllama", "nomic-embed-text"));
+        long ttftMillis = 150;
+        double tokensPerSecond = 40;
+        int tokens = 64;
+        int parallel = 4;
+        long loadMillis = 0;
+        long pullMillis = 500;
+        long embedMillis = 5;
+        int embeddingDimensions = 768;
+
+        public static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--port" -> options.port = Integer.parseInt(value);
+                    case "--models" -> options.models = new ArrayList<>(List.of(value.split(",")));
+                    case "--ttft-ms" -> options.ttftMillis = Long.parseLong(value);
+                    case "--tokens-per-second" -> options.tokensPerSecond = Double.parseDouble(value);
+                    case "--tokens" -> options.tokens = Integer.parseInt(value);
+                    case "--parallel" -> options.parallel = Integer.parseInt(value);
+                    case "--load-ms" -> options.loadMillis = Long.parseLong(value);
+                    case "--pull-ms" -> options.pullMillis = Long.parseLong(value);
+                    case "--embed-ms" -> options.embedMillis = Long.parseLong(value);
+                    case "--embedding-dimensions" -> options.embeddingDimensions = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            if (args.length % 2 != 0) {
+                throw new IllegalArgumentException("Option " + args[args.length - 1] + " needs a value");
+            }
+            return options;
+        }
+    }
+}
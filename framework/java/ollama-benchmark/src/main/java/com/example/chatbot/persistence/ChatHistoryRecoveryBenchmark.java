@@ -0,0 +1,86 @@
+package com.example.chatbot.persistence;
+
+import com.example.chatbot.config.ChatHistoryProperties;
+import com.example.chatbot.model.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the persistent chat history: opening a {@link ChatHistoryLog} scans every segment
+ * once to rebuild the session index. The log holds {@code messages} messages spread over 1000 sessions
+ * and is written once per trial, so the scan reads from the page cache, as after a quick restart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ChatHistoryRecoveryBenchmark {
+
+    private static final int SESSIONS = 1000;
+
+    @Param({"1000000"})
+    public int messages;
+
+    private Path directory;
+    private ChatHistoryProperties properties;
+    private ChatHistoryLog log;
+
+    @Setup(Level.Trial)
+    public void writeLog() throws IOException {
+        directory = Files.createTempDirectory("history-recovery");
+        properties = new ChatHistoryProperties();
+        ChatHistoryProperties.Persistence persistence = properties.getPersistence();
+        persistence.setEnabled(true);
+        persistence.setDirectory(directory.toString());
+        // Only the scan is measured; keep the background tasks from running during it
+        persistence.setFsyncInterval(Duration.ofHours(1));
+        persistence.setCompactionInterval(Duration.ofHours(1));
+
+        ChatHistoryLog writer = new ChatHistoryLog(properties);
+        writer.open();
+        ChatMessage question = ChatMessage.userMessage("What is the capital of France, and why is it famous?");
+        ChatMessage answer = ChatMessage.assistantMessage("Paris is the capital of France. "
+                + "It is famous for its art, its food and the Eiffel Tower.", "tinyllama");
+        for (int i = 0; i < messages; i++) {
+            writer.append("session-" + (i % SESSIONS), i % 2 == 0 ? question : answer);
+        }
+        writer.close();
+    }
+
+    @Benchmark
+    public ChatHistoryLog recover() throws IOException {
+        log = new ChatHistoryLog(properties);
+        log.open();
+        return log;
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeLog() {
+        log.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.config.ChatHistoryProperties;
+import com.example.chatbot.model.ChatMessage;
+import com.example.chatbot.persistence.ChatHistoryLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of {@link ChatHistoryStore#append} once sessions are full and every append evicts,
+ * for threads writing to their own sessions and to one shared session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ChatHistoryAppendBenchmark {
+
+    private static final String SHARED_SESSION = "shared";
+
+    private final AtomicInteger threadIds = new AtomicInteger();
+    private ChatHistoryStore store;
+    private ChatMessage message;
+
+    @Setup
+    public void setUp() {
+        ChatHistoryProperties properties = new ChatHistoryProperties();
+        // In-memory only: the persistent log is a separate, I/O-bound cost
+        store = new ChatHistoryStore(properties, new StaticListableBeanFactory().getBeanProvider(ChatHistoryLog.class));
+        message = ChatMessage.assistantMessage("A typical answer of a few sentences. ".repeat(8), "tinyllama");
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadSession {
+
+        String sessionId;
+
+        @Setup
+        public void setUp(ChatHistoryAppendBenchmark benchmark) {
+            sessionId = "session-" + benchmark.threadIds.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public void appendOwnSession(ThreadSession session) {
+        store.append(session.sessionId, message);
+    }
+
+    @Benchmark
+    public void appendSharedSession() {
+        store.append(SHARED_SESSION, message);
+    }
+}
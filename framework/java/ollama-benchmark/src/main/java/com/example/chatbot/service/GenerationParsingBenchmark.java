@@ -0,0 +1,121 @@
+package com.example.chatbot.service;
+
+import com.example.chatbot.model.GenerationResult;
+import com.example.chatbot.model.OllamaApi;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a non-streaming /api/generate body into a {@link GenerationResult}.
+ * The context array grows with the conversation, so it dominates the body of long sessions.
+ *
+ * <p>{@code stringAndTree} is how the body used to be read: joined into a String, parsed into a
+ * JsonNode tree and copied out field by field. {@code typedRecord} and {@code typedDataBuffers}
+ * are the current path, binding straight into {@link OllamaApi.GenerateResponse}; the latter goes
+ * through the same decoder WebClient uses, fed with the body in 8 KB network-sized buffers.
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}, the bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationParsingBenchmark {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final ResolvableType RESPONSE_TYPE = ResolvableType.forClass(OllamaApi.GenerateResponse.class);
+
+    @Param({"0", "2048", "8192"})
+    public int contextTokens;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Jackson2JsonDecoder decoder = new Jackson2JsonDecoder(objectMapper);
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("model", "tinyllama:latest");
+        response.put("created_at", "2024-01-01T00:00:00Z");
+        response.put("response", "The quick brown fox jumps over the lazy dog. ".repeat(20));
+        response.put("done", true);
+        ArrayNode context = response.putArray("context");
+        for (int i = 0; i < contextTokens; i++) {
+            context.add(29871 + i % 3000);
+        }
+        response.put("total_duration", 5_043_500_667L);
+        response.put("load_duration", 5_025_959L);
+        response.put("prompt_eval_count", 26);
+        response.put("prompt_eval_duration", 325_953_000L);
+        response.put("eval_count", 290);
+        response.put("eval_duration", 4_709_213_000L);
+        body = objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public GenerationResult stringAndTree() throws IOException {
+        JsonNode jsonNode = objectMapper.readTree(new String(body, StandardCharsets.UTF_8));
+        JsonNode context = jsonNode.path("context");
+        int[] tokens = null;
+        if (context.isArray() && !context.isEmpty()) {
+            tokens = new int[context.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = context.get(i).asInt();
+            }
+        }
+        return new GenerationResult(
+                jsonNode.path("response").asText(""),
+                tokens,
+                jsonNode.path("prompt_eval_count").asLong(0),
+                jsonNode.path("prompt_eval_duration").asLong(0),
+                jsonNode.path("eval_count").asLong(0),
+                jsonNode.path("eval_duration").asLong(0),
+                jsonNode.path("load_duration").asLong(0),
+                jsonNode.path("total_duration").asLong(0));
+    }
+
+    @Benchmark
+    public GenerationResult typedRecord() throws IOException {
+        return OllamaService.toResult(objectMapper.readValue(body, OllamaApi.GenerateResponse.class));
+    }
+
+    @Benchmark
+    public GenerationResult typedDataBuffers() {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, body.length - offset);
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(body, offset, length)));
+        }
+        OllamaApi.GenerateResponse response = (OllamaApi.GenerateResponse) decoder
+                .decodeToMono(Flux.fromIterable(buffers), RESPONSE_TYPE, MediaType.APPLICATION_JSON, null)
+                .block();
+        return OllamaService.toResult(response);
+    }
+}
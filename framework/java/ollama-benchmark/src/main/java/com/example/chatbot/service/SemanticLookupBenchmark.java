@@ -0,0 +1,83 @@
+package com.example.chatbot.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a semantic cache lookup in a full {@link VectorIndex}, for near-duplicate and unrelated queries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=1g")
+public class SemanticLookupBenchmark {
+
+    private static final int DIMENSIONS = 768;
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000"})
+    public int entries;
+
+    private VectorIndex<Integer> index;
+    private float[][] nearQueries;
+    private float[][] unrelatedQueries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(7);
+        index = new VectorIndex<>(DIMENSIONS, entries, TimeUnit.HOURS.toMillis(1), 42L);
+        float[][] stored = new float[QUERIES][];
+        for (int i = 0; i < entries; i++) {
+            float[] vector = randomVector(random);
+            index.add(vector, i);
+            if (i < QUERIES) {
+                stored[i] = vector;
+            }
+        }
+        nearQueries = new float[QUERIES][];
+        unrelatedQueries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            // A paraphrase lands close to the original: cosine similarity around 0.96
+            float[] near = stored[i].clone();
+            for (int d = 0; d < DIMENSIONS; d++) {
+                near[d] += (float) (random.nextGaussian() * 0.29);
+            }
+            nearQueries[i] = near;
+            unrelatedQueries[i] = randomVector(random);
+        }
+    }
+
+    @Benchmark
+    public Integer nearDuplicate() {
+        return index.search(nearQueries[next++ & (QUERIES - 1)], 0.95);
+    }
+
+    @Benchmark
+    public Integer unrelated() {
+        return index.search(unrelatedQueries[next++ & (QUERIES - 1)], 0.95);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
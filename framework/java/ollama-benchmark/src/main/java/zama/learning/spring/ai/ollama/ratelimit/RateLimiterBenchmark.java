@@ -0,0 +1,64 @@
+package zama.learning.spring.ai.ollama.ratelimit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link TokenBucketRateLimiter#tryAcquire} on the request path: one client hammered by all threads,
+ * and requests spread over many known clients, with buckets that admit every request or refuse them all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimiterBenchmark {
+
+    private static final int CLIENTS = 10_000;
+
+    // "allowed": a bucket of Integer.MAX_VALUE tokens that lasts the whole run; "refused": every bucket is empty
+    @Param({"allowed", "refused"})
+    public String outcome;
+
+    private TokenBucketRateLimiter limiter;
+    private String[] clients;
+
+    @Setup
+    public void setUp() {
+        boolean allowed = "allowed".equals(outcome);
+        limiter = new TokenBucketRateLimiter(allowed ? Integer.MAX_VALUE : 1, allowed ? Integer.MAX_VALUE : 1,
+                CLIENTS * 2L, Duration.ofMinutes(10));
+        clients = new String[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            clients[i] = "key:client-" + i;
+            // Fill the table, and empty the buckets when measuring refusals
+            limiter.tryAcquire(clients[i]);
+        }
+    }
+
+    @Benchmark
+    public TokenBucketRateLimiter.Decision sharedClient() {
+        return limiter.tryAcquire(clients[0]);
+    }
+
+    @Benchmark
+    public TokenBucketRateLimiter.Decision manyClients() {
+        return limiter.tryAcquire(clients[ThreadLocalRandom.current().nextInt(CLIENTS)]);
+    }
+}
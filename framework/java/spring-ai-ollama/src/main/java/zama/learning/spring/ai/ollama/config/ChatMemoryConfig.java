@@ -0,0 +1,23 @@
+package zama.learning.spring.ai.ollama.config;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import zama.learning.spring.ai.ollama.memory.WindowedChatMemory;
+
+@Configuration
+@EnableConfigurationProperties(ChatMemoryProperties.class)
+public class ChatMemoryConfig {
+    
+    /**
+     * Bounded in-memory store; declare another ChatMemory bean to keep conversations elsewhere
+     */
+    @Bean
+    @ConditionalOnMissingBean(ChatMemory.class)
+    public ChatMemory chatMemory(ChatMemoryProperties properties) {
+        return new WindowedChatMemory(properties.maxTokens(), properties.maxMessages(),
+            properties.idleTimeout(), properties.maxConversations());
+    }
+}
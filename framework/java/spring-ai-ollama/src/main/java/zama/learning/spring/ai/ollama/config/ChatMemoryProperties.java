@@ -0,0 +1,17 @@
+package zama.learning.spring.ai.ollama.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Limits of the conversation memory: the window kept per conversation and how many conversations are kept
+ */
+@ConfigurationProperties(prefix = "chat.memory")
+public record ChatMemoryProperties(
+        @DefaultValue("2000") int maxTokens,
+        @DefaultValue("50") int maxMessages,
+        @DefaultValue("30m") Duration idleTimeout,
+        @DefaultValue("10000") long maxConversations) {
+}
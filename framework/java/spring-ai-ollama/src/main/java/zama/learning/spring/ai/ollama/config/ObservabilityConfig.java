@@ -0,0 +1,25 @@
+package zama.learning.spring.ai.ollama.config;
+
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.boot.actuate.autoconfigure.health.ConditionalOnEnabledHealthIndicator;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import zama.learning.spring.ai.ollama.health.OllamaHealthIndicator;
+
+@Configuration
+@EnableConfigurationProperties(OllamaHealthProperties.class)
+public class ObservabilityConfig {
+    
+    /**
+     * Reported as the "ollama" component of /actuator/health; management.health.ollama.enabled=false turns it off
+     */
+    @Bean
+    @ConditionalOnEnabledHealthIndicator("ollama")
+    public OllamaHealthIndicator ollamaHealthIndicator(OllamaApi ollamaApi, OllamaChatModel ollamaChatModel,
+                                                       OllamaHealthProperties properties) {
+        return new OllamaHealthIndicator(ollamaApi, ollamaChatModel.getDefaultOptions().getModel(),
+            properties.cacheTtl(), properties.timeout());
+    }
+}
@@ -0,0 +1,16 @@
+package zama.learning.spring.ai.ollama.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * How long the Ollama health probe result is reused before Ollama is asked again, and how long a
+ * health poll waits for the probe before reporting Ollama down
+ */
+@ConfigurationProperties(prefix = "chat.health")
+public record OllamaHealthProperties(
+        @DefaultValue("30s") Duration cacheTtl,
+        @DefaultValue("3s") Duration timeout) {
+}
@@ -0,0 +1,33 @@
+package zama.learning.spring.ai.ollama.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import zama.learning.spring.ai.ollama.ratelimit.RateLimitInterceptor;
+import zama.learning.spring.ai.ollama.ratelimit.TokenBucketRateLimiter;
+
+/**
+ * Limits each client of the chat API, so one noisy caller cannot queue enough generations to starve the others
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+@ConditionalOnProperty(prefix = "chat.rate-limit", name = "enabled", matchIfMissing = true)
+public class RateLimitConfig implements WebMvcConfigurer {
+    
+    private final RateLimitProperties properties;
+    
+    public RateLimitConfig(RateLimitProperties properties) {
+        this.properties = properties;
+    }
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(properties.requestsPerMinute(),
+            properties.burst(), properties.maxClients(), properties.idleTimeout());
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, properties.apiKeyHeader(),
+                properties.apiKeys()))
+            .addPathPatterns("/api/chat", "/api/chat/**");
+    }
+}
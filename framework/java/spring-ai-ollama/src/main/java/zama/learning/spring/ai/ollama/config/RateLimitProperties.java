@@ -0,0 +1,23 @@
+package zama.learning.spring.ai.ollama.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Per-client limit on the chat API: a bucket of {@code burst} requests per client, refilled at
+ * {@code requestsPerMinute}. Clients sending one of {@code apiKeys} in {@code apiKeyHeader} get a bucket
+ * per key; everyone else, including callers with an unknown key, is told apart by address. At most {@code maxClients} buckets are kept, and those idle for {@code idleTimeout} are dropped.
+ */
+@ConfigurationProperties(prefix = "chat.rate-limit")
+public record RateLimitProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("30") int requestsPerMinute,
+        @DefaultValue("10") int burst,
+        @DefaultValue("X-API-Key") String apiKeyHeader,
+        @DefaultValue Set<String> apiKeys,
+        @DefaultValue("10000") long maxClients,
+        @DefaultValue("10m") Duration idleTimeout) {
+}
@@ -1,22 +1,36 @@
 package zama.learning.spring.ai.ollama.controller;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import zama.learning.spring.ai.ollama.model.ChatMessage;
 import zama.learning.spring.ai.ollama.service.ChatService;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api")
 public class ChatApiController {
     
+    private static final Logger logger = LoggerFactory.getLogger(ChatApiController.class);
+    
+    private static final String UNAVAILABLE = "Sorry, I'm having trouble connecting to the AI model. Please make sure Ollama is running and try again.";
+    
     private final ChatService chatService;
     
     public ChatApiController(ChatService chatService) {
         this.chatService = chatService;
     }
     
+    /**
+     * Answers a message, or responds 503 with an "error" body if the model call fails
+     */
     @PostMapping("/chat")
     public ResponseEntity<Map<String, String>> chat(@RequestBody ChatMessage chatMessage) {
         if (chatMessage.getMessage() == null || chatMessage.getMessage().trim().isEmpty()) {
@@ -24,10 +38,43 @@ public class ChatApiController {
                 .body(Map.of("error", "Message cannot be empty"));
         }
         
-        String response = chatService.chat(chatMessage.getMessage());
-        return ResponseEntity.ok(Map.of(
-            "message", chatMessage.getMessage(),
-            "response", response
-        ));
+        String response;
+        try {
+            response = chatService.chat(chatMessage.getConversationId(), chatMessage.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Chat request failed", e);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", UNAVAILABLE));
+        }
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("message", chatMessage.getMessage());
+        body.put("response", response);
+        if (chatMessage.getConversationId() != null) {
+            body.put("conversationId", chatMessage.getConversationId());
+        }
+        return ResponseEntity.ok(body);
+    }
+    
+    /**
+     * Streams the answer as server-sent events: one "token" event per chunk, then "done",
+     * or "error" if the generation fails
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> stream(@RequestBody ChatMessage chatMessage) {
+        if (chatMessage.getMessage() == null || chatMessage.getMessage().trim().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        
+        Flux<ServerSentEvent<String>> events = chatService.stream(chatMessage.getConversationId(), chatMessage.getMessage())
+            .map(token -> ServerSentEvent.builder(token).event("token").build())
+            .concatWith(Flux.just(ServerSentEvent.builder("").event("done").build()))
+            .onErrorResume(error -> {
+                logger.error("Error streaming chat response", error);
+                return Flux.just(ServerSentEvent
+                    .builder(UNAVAILABLE)
+                    .event("error")
+                    .build());
+            });
+        return ResponseEntity.ok(events);
     }
 }
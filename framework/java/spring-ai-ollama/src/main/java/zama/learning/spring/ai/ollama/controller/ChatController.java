@@ -1,55 +1,82 @@
 package zama.learning.spring.ai.ollama.controller;
 
+import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+import reactor.core.publisher.Flux;
 import zama.learning.spring.ai.ollama.model.ChatMessage;
 import zama.learning.spring.ai.ollama.service.ChatService;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Thymeleaf chat page. The conversation is kept by the chat memory under the HTTP session's id,
+ * so the session itself stores nothing and stays the same size however long the chat runs.
+ *
+ * <p>Posting to {@code /chat} renders the whole page with every exchange. The page's script instead posts to
+ * {@code /chat/fragment/stream} and appends what it returns, so only the new exchange is rendered and sent
+ * per turn, however long the conversation.
+ */
 @Controller
-@SessionAttributes("chatHistory")
 public class ChatController {
     
+    private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
+    
+    private static final String EXCHANGE_TEMPLATE = "fragments/exchange";
+    private static final String APOLOGY = "Sorry, I'm having trouble connecting to the AI model. Please make sure Ollama is running and try again.";
+    
     private final ChatService chatService;
+    private final ITemplateEngine templateEngine;
     
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, ITemplateEngine templateEngine) {
         this.chatService = chatService;
-    }
-    
-    @ModelAttribute("chatHistory")
-    public List<ChatMessage> chatHistory() {
-        return new ArrayList<>();
+        this.templateEngine = templateEngine;
     }
     
     @GetMapping("/")
-    public String index(Model model) {
+    public String index(HttpSession session, Model model) {
         model.addAttribute("chatMessage", new ChatMessage());
+        model.addAttribute("chatHistory", chatService.history(session.getId()));
         return "chat";
     }
     
     @PostMapping("/chat")
     public String chat(@Valid @ModelAttribute ChatMessage chatMessage, 
                       BindingResult bindingResult,
-                      @ModelAttribute("chatHistory") List<ChatMessage> chatHistory,
+                      HttpSession session,
                       Model model) {
         
         if (bindingResult.hasErrors()) {
+            model.addAttribute("chatHistory", chatService.history(session.getId()));
             return "chat";
         }
         
-        // Get response from AI
-        String response = chatService.chat(chatMessage.getMessage());
-        
-        // Create a complete chat message with both user input and AI response
-        ChatMessage completeChatMessage = new ChatMessage(chatMessage.getMessage(), response);
+        // Get response from AI; the memory records the exchange
+        String response = answer(session.getId(), chatMessage.getMessage());
         
-        // Add to chat history
-        chatHistory.add(completeChatMessage);
+        List<ChatMessage> chatHistory = new ArrayList<>(chatService.history(session.getId()));
+        if (chatHistory.isEmpty()) {
+            chatHistory.add(new ChatMessage(chatMessage.getMessage(), response));
+        } else if (chatHistory.get(chatHistory.size() - 1).getResponse() == null) {
+            // A failed call leaves no answer in memory; still show the user what went wrong
+            chatHistory.get(chatHistory.size() - 1).setResponse(response);
+        }
+        model.addAttribute("chatHistory", chatHistory);
         
         // Clear the form for next message
         model.addAttribute("chatMessage", new ChatMessage());
@@ -57,10 +84,75 @@ public class ChatController {
         return "chat";
     }
     
+    /**
+     * Answers a message and renders only its exchange, for the page to append
+     */
+    @PostMapping("/chat/fragment")
+    public String chatFragment(@Valid @ModelAttribute ChatMessage chatMessage,
+                              BindingResult bindingResult,
+                              HttpSession session,
+                              Model model) {
+        
+        if (bindingResult.hasErrors()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Message cannot be empty");
+        }
+        
+        String response = answer(session.getId(), chatMessage.getMessage());
+        model.addAttribute("chat", new ChatMessage(chatMessage.getMessage(), response));
+        return EXCHANGE_TEMPLATE + " :: exchange";
+    }
+    
+    /**
+     * Streams a message's exchange as server-sent events: "exchange" with the rendered exchange and an empty
+     * answer, then one "token" per chunk of the answer for the page to append to it, then "done" (or "error").
+     * Data is JSON ({"html": ...} or {"text": ...}) so markup and answers may span lines.
+     */
+    @PostMapping(value = "/chat/fragment/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public Flux<ServerSentEvent<Map<String, String>>> chatFragmentStream(@Valid @ModelAttribute ChatMessage chatMessage,
+                                                                      BindingResult bindingResult,
+                                                                      HttpSession session) {
+        
+        if (bindingResult.hasErrors()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Message cannot be empty");
+        }
+        
+        String exchange = renderExchange(new ChatMessage(chatMessage.getMessage()));
+        return Flux.just(ServerSentEvent.builder(Map.of("html", exchange)).event("exchange").build())
+            .concatWith(chatService.stream(session.getId(), chatMessage.getMessage())
+                .map(token -> ServerSentEvent.builder(Map.of("text", token)).event("token").build()))
+            .concatWith(Flux.just(ServerSentEvent.builder(Map.of("text", "")).event("done").build()))
+            .onErrorResume(error -> {
+                logger.error("Error streaming chat response", error);
+                return Flux.just(ServerSentEvent
+                    .builder(Map.of("text", APOLOGY))
+                    .event("error")
+                    .build());
+            });
+    }
+    
     @PostMapping("/clear")
-    public String clearChat(@ModelAttribute("chatHistory") List<ChatMessage> chatHistory, Model model) {
-        chatHistory.clear();
+    public String clearChat(HttpSession session, Model model) {
+        chatService.clear(session.getId());
+        model.addAttribute("chatHistory", List.of());
         model.addAttribute("chatMessage", new ChatMessage());
         return "chat";
     }
+    
+    /**
+     * The model's answer, or an apology shown in its place on the page if the call fails
+     */
+    private String answer(String conversationId, String message) {
+        try {
+            return chatService.chat(conversationId, message);
+        } catch (RuntimeException e) {
+            logger.error("Chat request failed", e);
+            return APOLOGY;
+        }
+    }
+    
+    private String renderExchange(ChatMessage chat) {
+        Context context = new Context(LocaleContextHolder.getLocale(), Map.of("chat", chat));
+        return templateEngine.process(EXCHANGE_TEMPLATE, Set.of("exchange"), context);
+    }
 }
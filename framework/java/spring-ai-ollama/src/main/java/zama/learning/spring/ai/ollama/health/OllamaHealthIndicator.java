@@ -0,0 +1,126 @@
+package zama.learning.spring.ai.ollama.health;
+
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reports whether Ollama answers and has the configured chat model pulled.
+ *
+ * <p>The probe lists Ollama's local models. Its result, up or down, is reused for {@code cacheTtl}, so
+ * however often the health endpoint is polled, Ollama is asked at most once per TTL; concurrent polls
+ * of an expired result share a single probe.
+ *
+ * <p>The probe runs on its own thread and a poll waits for it at most {@code timeout}, reporting down
+ * if Ollama has not answered by then. A hung probe is not started again: later polls keep waiting on
+ * it, so a stalled Ollama never ties up more than one thread.
+ */
+public class OllamaHealthIndicator implements HealthIndicator {
+    
+    private final OllamaApi ollamaApi;
+    private final String model;
+    private final long cacheTtlNanos;
+    private final Duration timeout;
+    private final AtomicReference<CompletableFuture<Probe>> inFlight = new AtomicReference<>();
+    private volatile Probe lastProbe;
+    
+    public OllamaHealthIndicator(OllamaApi ollamaApi, String model, Duration cacheTtl, Duration timeout) {
+        this.ollamaApi = ollamaApi;
+        this.model = model;
+        this.cacheTtlNanos = cacheTtl.toNanos();
+        this.timeout = timeout;
+    }
+    
+    @Override
+    public Health health() {
+        Probe probe = lastProbe;
+        if (probe != null && !probe.isExpired(cacheTtlNanos)) {
+            return probe.health();
+        }
+        try {
+            return refresh().get(timeout.toNanos(), TimeUnit.NANOSECONDS).health();
+        } catch (TimeoutException e) {
+            return Health.down()
+                .withDetail("error", "Ollama did not answer within " + timeout.toMillis() + " ms")
+                .withDetail("model", model)
+                .withDetail("checkedAt", Instant.now().toString())
+                .build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Health.down(e).withDetail("model", model).build();
+        } catch (ExecutionException e) {
+            return Health.down(e.getCause()).withDetail("model", model).build();
+        }
+    }
+    
+    /**
+     * The probe in flight, or a new one if none is
+     */
+    private CompletableFuture<Probe> refresh() {
+        while (true) {
+            CompletableFuture<Probe> current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            CompletableFuture<Probe> started = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, started)) {
+                Thread.ofVirtual().name("ollama-health-probe").start(() -> {
+                    Probe probe = new Probe(probe(), System.nanoTime());
+                    lastProbe = probe;
+                    inFlight.set(null);
+                    started.complete(probe);
+                });
+                return started;
+            }
+        }
+    }
+    
+    private Health probe() {
+        long startedAt = System.nanoTime();
+        try {
+            List<OllamaApi.Model> models = ollamaApi.listModels().models();
+            long responseTimeMs = (System.nanoTime() - startedAt) / 1_000_000;
+            boolean pulled = models != null && models.stream().anyMatch(entry -> sameModel(entry.name(), model));
+            Health.Builder health = pulled
+                ? Health.up()
+                : Health.down().withDetail("error", "Model " + model + " is not pulled; run: ollama pull " + model);
+            return health
+                .withDetail("model", model)
+                .withDetail("responseTimeMs", responseTimeMs)
+                .withDetail("checkedAt", Instant.now().toString())
+                .build();
+        } catch (Exception e) {
+            return Health.down(e)
+                .withDetail("model", model)
+                .withDetail("checkedAt", Instant.now().toString())
+                .build();
+        }
+    }
+    
+    /**
+     * Ollama lists models with their tag; a model configured without one means the "latest" tag
+     */
+    static boolean sameModel(String listed, String configured) {
+        return listed != null && configured != null && withTag(listed).equals(withTag(configured));
+    }
+    
+    private static String withTag(String name) {
+        return name.contains(":") ? name : name + ":latest";
+    }
+    
+    private record Probe(Health health, long probedAtNanos) {
+        
+        boolean isExpired(long ttlNanos) {
+            return System.nanoTime() - probedAtNanos >= ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package zama.learning.spring.ai.ollama.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * In-memory {@link ChatMemory} that keeps a sliding window of each conversation.
+ *
+ * <p>A conversation keeps its most recent messages up to {@code maxTokens} estimated tokens and
+ * {@code maxMessages} messages; older ones are dropped as new ones arrive, so a conversation's size is
+ * bounded however long it runs. Conversations idle for {@code idleTimeout} are evicted, and at most
+ * {@code maxConversations} are kept.
+ */
+public class WindowedChatMemory implements ChatMemory {
+    
+    private final int maxTokens;
+    private final int maxMessages;
+    private final Cache<String, Window> conversations;
+    
+    public WindowedChatMemory(int maxTokens, int maxMessages, Duration idleTimeout, long maxConversations) {
+        this.maxTokens = maxTokens;
+        this.maxMessages = maxMessages;
+        this.conversations = Caffeine.newBuilder()
+            .expireAfterAccess(idleTimeout)
+            .maximumSize(maxConversations)
+            .build();
+    }
+    
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        conversations.get(conversationId, id -> new Window()).add(messages, maxTokens, maxMessages);
+    }
+    
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        Window window = conversations.getIfPresent(conversationId);
+        return window == null ? List.of() : window.last(lastN);
+    }
+    
+    @Override
+    public void clear(String conversationId) {
+        conversations.invalidate(conversationId);
+    }
+    
+    public long conversationCount() {
+        return conversations.estimatedSize();
+    }
+    
+    /**
+     * Rough token estimate, about four characters per token
+     */
+    static int estimateTokens(Message message) {
+        String text = message.getText();
+        return text == null ? 1 : Math.max(1, (text.length() + 3) / 4);
+    }
+    
+    private record Entry(Message message, int tokens) {
+    }
+    
+    /**
+     * The retained messages of one conversation, oldest first. Guarded by its own monitor.
+     */
+    private static final class Window {
+        
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private int tokens;
+        
+        synchronized void add(List<Message> messages, int maxTokens, int maxMessages) {
+            for (Message message : messages) {
+                Entry entry = new Entry(message, estimateTokens(message));
+                entries.addLast(entry);
+                tokens += entry.tokens();
+            }
+            while (entries.size() > 1 && (tokens > maxTokens || entries.size() > maxMessages)) {
+                removeFirst();
+            }
+            // Start the window at a user turn, so the model never sees an answer without its question
+            while (entries.size() > 1 && entries.peekFirst().message().getMessageType() != MessageType.USER) {
+                removeFirst();
+            }
+        }
+        
+        synchronized List<Message> last(int lastN) {
+            int skip = Math.max(0, entries.size() - lastN);
+            List<Message> result = new ArrayList<>(entries.size() - skip);
+            Iterator<Entry> iterator = entries.iterator();
+            for (int i = 0; iterator.hasNext(); i++) {
+                Entry entry = iterator.next();
+                if (i >= skip) {
+                    result.add(entry.message());
+                }
+            }
+            return result;
+        }
+        
+        private void removeFirst() {
+            tokens -= entries.removeFirst().tokens();
+        }
+    }
+}
@@ -9,6 +9,9 @@ public class ChatMessage {
     
     private String response;
     
+    // Optional: answers with the remembered window of this conversation (JSON API only)
+    private String conversationId;
+    
     public ChatMessage() {}
     
     public ChatMessage(String message) {
@@ -35,4 +38,12 @@ public class ChatMessage {
     public void setResponse(String response) {
         this.response = response;
     }
+    
+    public String getConversationId() {
+        return conversationId;
+    }
+    
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
 }
@@ -0,0 +1,75 @@
+package zama.learning.spring.ai.ollama.ratelimit;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a token for every chat API request from its client's bucket and answers 429 when there is none.
+ *
+ * <p>The client is the value of the API key header when it is one of the configured keys, or the remote
+ * address otherwise: a key the application does not know could be made up per request to get a fresh
+ * bucket every time, so it counts for no more than sending none. Every response
+ * carries X-RateLimit-Limit, X-RateLimit-Remaining and X-RateLimit-Reset (seconds until the bucket is
+ * full); a refused one also carries Retry-After.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitInterceptor.class);
+    
+    private final TokenBucketRateLimiter rateLimiter;
+    private final String apiKeyHeader;
+    private final Set<String> apiKeys;
+    
+    public RateLimitInterceptor(TokenBucketRateLimiter rateLimiter, String apiKeyHeader, Set<String> apiKeys) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeyHeader = apiKeyHeader;
+        this.apiKeys = Set.copyOf(apiKeys);
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        // A streamed answer is dispatched again once it completes; it was counted on the way in
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        
+        String client = clientOf(request);
+        TokenBucketRateLimiter.Decision decision = rateLimiter.tryAcquire(client);
+        response.setHeader("X-RateLimit-Limit", Integer.toString(decision.limit()));
+        response.setHeader("X-RateLimit-Remaining", Integer.toString(decision.remaining()));
+        response.setHeader("X-RateLimit-Reset", Long.toString(seconds(decision.resetNanos())));
+        if (decision.allowed()) {
+            return true;
+        }
+        
+        long retryAfter = seconds(decision.retryAfterNanos());
+        logger.debug("Rate limit reached for {} on {}", client.startsWith("key:") ? "an API key" : client,
+            request.getRequestURI());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too many requests, please retry in " + retryAfter + " seconds\"}");
+        return false;
+    }
+    
+    String clientOf(HttpServletRequest request) {
+        String apiKey = request.getHeader(apiKeyHeader);
+        return apiKey != null && apiKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + request.getRemoteAddr();
+    }
+    
+    private static long seconds(long nanos) {
+        // Rounded up, so a client that waits as told is not refused again
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+    }
+}
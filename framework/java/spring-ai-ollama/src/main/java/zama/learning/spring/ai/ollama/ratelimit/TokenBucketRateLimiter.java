@@ -0,0 +1,84 @@
+package zama.learning.spring.ai.ollama.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory token bucket per client, without locks.
+ *
+ * <p>Each bucket is a single {@link AtomicLong} holding the time at which it will be full again (the
+ * "theoretical arrival time" of the generic cell rate algorithm). Taking a token moves that time one refill
+ * interval forward with a compare-and-set; a request is refused when it would move it more than
+ * {@code burst} intervals past now. This behaves exactly like a bucket of {@code burst} tokens refilled
+ * continuously, without a refill timer or a lock per bucket.
+ *
+ * <p>Buckets live in a Caffeine cache bounded to {@code maxClients} entries and evicted after
+ * {@code idleTimeout} without requests, so many distinct clients cannot exhaust memory. A client that
+ * comes back after its bucket was evicted starts with a full bucket, which is what it would have had anyway
+ * once idle for longer than {@code burst} intervals.
+ */
+public class TokenBucketRateLimiter {
+    
+    private final int burst;
+    private final long nanosPerToken;
+    private final long capacityNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<String, AtomicLong> buckets;
+    
+    public TokenBucketRateLimiter(int requestsPerMinute, int burst, long maxClients, Duration idleTimeout) {
+        this(requestsPerMinute, burst, maxClients, idleTimeout, System::nanoTime);
+    }
+    
+    TokenBucketRateLimiter(int requestsPerMinute, int burst, long maxClients, Duration idleTimeout, LongSupplier nanoClock) {
+        if (requestsPerMinute <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.burst = burst;
+        this.nanosPerToken = Duration.ofMinutes(1).toNanos() / requestsPerMinute;
+        this.capacityNanos = burst * nanosPerToken;
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(maxClients)
+            .expireAfterAccess(idleTimeout)
+            .build();
+    }
+    
+    /**
+     * Takes a token from the client's bucket if it has one
+     */
+    public Decision tryAcquire(String client) {
+        AtomicLong fullAt = buckets.get(client, key -> new AtomicLong(nanoClock.getAsLong()));
+        while (true) {
+            long stored = fullAt.get();
+            long now = nanoClock.getAsLong();
+            // A bucket full since before now takes its first token from now
+            long next = Math.max(stored, now) + nanosPerToken;
+            long wait = next - now;
+            if (wait > capacityNanos) {
+                return new Decision(false, burst, 0, wait - capacityNanos, wait - nanosPerToken);
+            }
+            if (fullAt.compareAndSet(stored, next)) {
+                return new Decision(true, burst, (int) ((capacityNanos - wait) / nanosPerToken), 0, wait);
+            }
+        }
+    }
+    
+    /**
+     * Number of clients with a bucket, after pending evictions
+     */
+    public long clientCount() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+    
+    /**
+     * Outcome of one request: whether it may proceed, the tokens left, and when to retry or when the
+     * bucket is full again, in nanoseconds from now
+     */
+    public record Decision(boolean allowed, int limit, int remaining, long retryAfterNanos, long resetNanos) {
+    }
+}
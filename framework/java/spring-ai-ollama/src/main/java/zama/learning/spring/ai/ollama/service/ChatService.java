@@ -1,26 +1,93 @@
 package zama.learning.spring.ai.ollama.service;
 
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.chat.client.advisor.AbstractChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import zama.learning.spring.ai.ollama.config.ChatMemoryProperties;
+import zama.learning.spring.ai.ollama.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 public class ChatService {
     
     private final ChatClient chatClient;
+    private final ChatMemory chatMemory;
+    private final MessageChatMemoryAdvisor memoryAdvisor;
+    private final int maxMessages;
     
-    public ChatService(OllamaChatModel ollamaChatModel) {
-        this.chatClient = ChatClient.builder(ollamaChatModel).build();
+    // The auto-configured builder carries the observation registry, so every call is timed and its token usage
+    // and errors are recorded (gen_ai.client.operation, gen_ai.client.token.usage, spring.ai.chat.client)
+    public ChatService(ChatClient.Builder chatClientBuilder, ChatMemory chatMemory, ChatMemoryProperties memoryProperties) {
+        this.chatClient = chatClientBuilder.build();
+        this.chatMemory = chatMemory;
+        this.maxMessages = memoryProperties.maxMessages();
+        // Sends the conversation's window ahead of each message and records the exchange afterwards
+        this.memoryAdvisor = new MessageChatMemoryAdvisor(chatMemory,
+            AbstractChatMemoryAdvisor.DEFAULT_CHAT_MEMORY_CONVERSATION_ID, maxMessages);
     }
     
     public String chat(String message) {
-        try {
-            return chatClient.prompt()
-                .user(message)
-                .call()
-                .content();
-        } catch (Exception e) {
-            return "Sorry, I'm having trouble connecting to the AI model. Please make sure Ollama is running and try again.";
+        return chat(null, message);
+    }
+    
+    /**
+     * Answers a message of a conversation, which the model sees the recent window of.
+     * Without a conversation id the message is answered on its own. A failed call throws; the
+     * controllers decide how to report it.
+     */
+    public String chat(String conversationId, String message) {
+        return prompt(conversationId, message)
+            .call()
+            .content();
+    }
+    
+    public Flux<String> stream(String message) {
+        return stream(null, message);
+    }
+    
+    /**
+     * Streams the answer as the model generates it. No thread is held while waiting for tokens,
+     * and cancelling the subscription stops the request to Ollama.
+     */
+    public Flux<String> stream(String conversationId, String message) {
+        return prompt(conversationId, message)
+            .stream()
+            .content();
+    }
+    
+    /**
+     * The remembered window of a conversation as question and answer pairs, oldest first
+     */
+    public List<ChatMessage> history(String conversationId) {
+        List<ChatMessage> history = new ArrayList<>();
+        for (Message message : chatMemory.get(conversationId, maxMessages)) {
+            if (message.getMessageType() == MessageType.USER) {
+                history.add(new ChatMessage(message.getText()));
+            } else if (message.getMessageType() == MessageType.ASSISTANT && !history.isEmpty()) {
+                history.get(history.size() - 1).setResponse(message.getText());
+            }
+        }
+        return history;
+    }
+    
+    public void clear(String conversationId) {
+        chatMemory.clear(conversationId);
+    }
+    
+    private ChatClient.ChatClientRequestSpec prompt(String conversationId, String message) {
+        ChatClient.ChatClientRequestSpec request = chatClient.prompt().user(message);
+        if (conversationId != null) {
+            request = request
+                .advisors(memoryAdvisor)
+                .advisors(advisor -> advisor.param(AbstractChatMemoryAdvisor.CHAT_MEMORY_CONVERSATION_ID_KEY, conversationId));
         }
+        return request;
     }
 }
@@ -0,0 +1,117 @@
+package zama.learning.spring.ai.ollama.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import zama.learning.spring.ai.ollama.service.ChatService;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Only configured keys get a bucket of their own; the rate limit test uses these two
+@WebMvcTest(controllers = ChatApiController.class,
+        properties = "chat.rate-limit.api-keys=noisy-client,quiet-client")
+class ChatApiControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ChatService chatService;
+
+    @Test
+    void shouldAnswerChatMessage() throws Exception {
+        when(chatService.chat(isNull(), anyString())).thenReturn("Hello! How can I help you?");
+        mockMvc.perform(post("/api/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"message\":\"Hello\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.response").value("Hello! How can I help you?"));
+    }
+
+    @Test
+    void shouldAnswerServiceUnavailableWhenTheModelCallFails() throws Exception {
+        when(chatService.chat(isNull(), anyString())).thenThrow(new IllegalStateException("Ollama is down"));
+        mockMvc.perform(post("/api/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"message\":\"Hello\"}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").exists())
+                .andExpect(jsonPath("$.response").doesNotExist());
+    }
+
+    @Test
+    void shouldStreamTokensAsServerSentEvents() throws Exception {
+        when(chatService.stream(isNull(), anyString())).thenReturn(Flux.just("Hello", "!"));
+        MvcResult result = mockMvc.perform(post("/api/chat/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"message\":\"Hello\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("event:token\ndata:Hello\n\n")))
+                .andExpect(content().string(containsString("event:done")));
+    }
+
+    @Test
+    void shouldReportStreamFailureAsErrorEvent() throws Exception {
+        when(chatService.stream(isNull(), anyString())).thenReturn(Flux.error(new IllegalStateException("Ollama is down")));
+        MvcResult result = mockMvc.perform(post("/api/chat/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"message\":\"Hello\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(content().string(containsString("event:error")));
+    }
+
+    @Test
+    void shouldRejectEmptyStreamRequest() throws Exception {
+        mockMvc.perform(post("/api/chat/stream")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"message\":\" \"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRefuseClientsOverTheirRateLimit() throws Exception {
+        when(chatService.chat(isNull(), anyString())).thenReturn("Hello!");
+        // Default burst is 10; a key of its own keeps the other tests' requests out of this bucket
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(post("/api/chat")
+                    .header("X-API-Key", "noisy-client")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"message\":\"Hello\"}"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("X-RateLimit-Remaining", String.valueOf(9 - i)));
+        }
+
+        mockMvc.perform(post("/api/chat")
+                .header("X-API-Key", "noisy-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"message\":\"Hello\"}"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(header().string("X-RateLimit-Remaining", "0"));
+
+        mockMvc.perform(post("/api/chat")
+                .header("X-API-Key", "quiet-client")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"message\":\"Hello\"}"))
+                .andExpect(status().isOk());
+    }
+}
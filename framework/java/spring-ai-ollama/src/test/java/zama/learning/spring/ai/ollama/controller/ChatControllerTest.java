@@ -4,11 +4,17 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 import zama.learning.spring.ai.ollama.service.ChatService;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -33,7 +39,7 @@ class ChatControllerTest {
 
     @Test
     void shouldHandleChatMessage() throws Exception {
-        when(chatService.chat(anyString())).thenReturn("Hello! How can I help you?");        mockMvc.perform(post("/chat")
+        when(chatService.chat(anyString(), anyString())).thenReturn("Hello! How can I help you?");        mockMvc.perform(post("/chat")
                 .param("message", "Hello"))
                 .andExpect(status().isOk())
                 .andExpect(view().name("chat"));
@@ -43,4 +49,48 @@ class ChatControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(view().name("chat"));
     }
+
+    @Test
+    void shouldRenderOnlyTheNewExchange() throws Exception {
+        when(chatService.chat(anyString(), anyString())).thenReturn("Hello! How can I help you?");
+        mockMvc.perform(post("/chat/fragment")
+                .param("message", "Hello"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("class=\"chat-exchange\"")))
+                .andExpect(content().string(containsString("Hello! How can I help you?")))
+                .andExpect(content().string(not(containsString("<html"))));
+    }
+
+    @Test
+    void shouldShowAnApologyOnThePageWhenTheModelCallFails() throws Exception {
+        when(chatService.chat(anyString(), anyString())).thenThrow(new IllegalStateException("Ollama is down"));
+        mockMvc.perform(post("/chat/fragment")
+                .param("message", "Hello"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("trouble connecting to the AI model")));
+    }
+
+    @Test
+    void shouldRejectEmptyFragmentRequest() throws Exception {
+        mockMvc.perform(post("/chat/fragment")
+                .param("message", ""))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldStreamTheExchangeAndItsTokens() throws Exception {
+        when(chatService.stream(anyString(), anyString())).thenReturn(Flux.just("Hello", "\n!"));
+        MvcResult result = mockMvc.perform(post("/chat/fragment/stream")
+                .param("message", "Hi <there>"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(containsString("event:exchange")))
+                .andExpect(content().string(containsString("Hi &lt;there&gt;")))
+                .andExpect(content().string(containsString("event:token\ndata:{\"text\":\"\\n!\"}")))
+                .andExpect(content().string(containsString("event:done")));
+    }
 }
@@ -0,0 +1,139 @@
+package zama.learning.spring.ai.ollama.controller;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import zama.learning.spring.ai.ollama.model.ChatMessage;
+import zama.learning.spring.ai.ollama.service.ChatService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Measures what a turn costs over a 500-turn session: bytes sent and time to render, for the full page
+ * posted to /chat, the exchange fragment posted to /chat/fragment and the streamed exchange the page's
+ * script posts to /chat/fragment/stream. Templates are cached as in production, and a first session is
+ * played and discarded to warm up the JIT. The measurements are written to
+ * {@code target/chat-fragment-rendering.txt}; only the sizes are asserted, since timings depend on the
+ * machine. It renders thousands of pages, so it is tagged out of the unit suite.
+ */
+@Tag("measurement")
+@WebMvcTest(controllers = ChatController.class, properties = "spring.thymeleaf.cache=true")
+class ChatFragmentRenderingTest {
+
+    private static final int TURNS = 500;
+    private static final String ANSWER = "Here is an answer of a typical length. ".repeat(8);
+    private static final List<String> TOKENS = Arrays.asList(ANSWER.split("(?<= )"));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ChatService chatService;
+
+    @Test
+    void shouldKeepPerTurnCostConstantWithFragments() throws Exception {
+        List<ChatMessage> history = new ArrayList<>();
+        when(chatService.history(anyString())).thenAnswer(invocation -> new ArrayList<>(history));
+        when(chatService.chat(anyString(), anyString())).thenReturn(ANSWER);
+        when(chatService.stream(anyString(), anyString())).thenAnswer(invocation -> Flux.fromIterable(TOKENS));
+
+        playSession(history);
+        history.clear();
+        Turns turns = playSession(history);
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%6s %12s %10s %14s %12s %12s %10s", "turn", "page bytes", "page us",
+                "fragment bytes", "fragment us", "stream bytes", "stream us"));
+        for (int turn : new int[]{1, 10, 50, 100, 250, 500}) {
+            int i = turn - 1;
+            report.add(String.format("%6d %12d %10d %14d %12d %12d %10d", turn,
+                    turns.pageBytes[i], average(turns.pageNanos, i) / 1_000,
+                    turns.fragmentBytes[i], average(turns.fragmentNanos, i) / 1_000,
+                    turns.streamBytes[i], average(turns.streamNanos, i) / 1_000));
+        }
+        Files.write(Path.of("target", "chat-fragment-rendering.txt"), report);
+
+        // The fragments are the same size on the first and the last turn; the page grows with every turn
+        assertThat(turns.fragmentBytes[TURNS - 1]).isEqualTo(turns.fragmentBytes[0]);
+        assertThat(turns.streamBytes[TURNS - 1]).isEqualTo(turns.streamBytes[0]);
+        assertThat(turns.pageBytes[TURNS - 1])
+                .isGreaterThan(turns.pageBytes[0] + (TURNS - 2) * turns.fragmentBytes[0] / 2);
+    }
+
+    /**
+     * One session of {@link #TURNS} turns, each posted to all three endpoints
+     */
+    private Turns playSession(List<ChatMessage> history) throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        Turns turns = new Turns();
+        for (int turn = 0; turn < TURNS; turn++) {
+            String message = String.format("Question number %03d?", turn);
+
+            long startedAt = System.nanoTime();
+            MvcResult fragment = mockMvc.perform(post("/chat/fragment").session(session).param("message", message))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            turns.fragmentNanos[turn] = System.nanoTime() - startedAt;
+            turns.fragmentBytes[turn] = fragment.getResponse().getContentAsByteArray().length;
+
+            startedAt = System.nanoTime();
+            MvcResult started = mockMvc.perform(post("/chat/fragment/stream").session(session).param("message", message))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            MvcResult stream = mockMvc.perform(asyncDispatch(started))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            turns.streamNanos[turn] = System.nanoTime() - startedAt;
+            turns.streamBytes[turn] = stream.getResponse().getContentAsByteArray().length;
+
+            // The full page of the same turn, with the history the memory would hold by then
+            history.add(new ChatMessage(message, ANSWER));
+            startedAt = System.nanoTime();
+            MvcResult page = mockMvc.perform(post("/chat").session(session).param("message", message))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            turns.pageNanos[turn] = System.nanoTime() - startedAt;
+            turns.pageBytes[turn] = page.getResponse().getContentAsByteArray().length;
+        }
+        return turns;
+    }
+
+    /**
+     * Average over up to ten turns ending at the given one, to smooth out single slow requests
+     */
+    private static long average(long[] nanos, int end) {
+        int start = Math.max(0, end - 9);
+        long sum = 0;
+        for (int i = start; i <= end; i++) {
+            sum += nanos[i];
+        }
+        return sum / (end - start + 1);
+    }
+
+    private static final class Turns {
+        final long[] pageBytes = new long[TURNS];
+        final long[] pageNanos = new long[TURNS];
+        final long[] fragmentBytes = new long[TURNS];
+        final long[] fragmentNanos = new long[TURNS];
+        final long[] streamBytes = new long[TURNS];
+        final long[] streamNanos = new long[TURNS];
+    }
+}
@@ -0,0 +1,105 @@
+package zama.learning.spring.ai.ollama.health;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OllamaHealthIndicatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final OllamaApi ollamaApi = mock(OllamaApi.class);
+
+    @Test
+    void shouldReportUpWhenTheModelIsPulled() {
+        when(ollamaApi.listModels()).thenReturn(models("tinyllama:latest"));
+        OllamaHealthIndicator indicator = new OllamaHealthIndicator(ollamaApi, "tinyllama", Duration.ofSeconds(30), TIMEOUT);
+
+        Health health = indicator.health();
+
+        assertThat(health.getStatus()).isEqualTo(Status.UP);
+        assertThat(health.getDetails()).containsEntry("model", "tinyllama");
+    }
+
+    @Test
+    void shouldReportDownWhenTheModelIsMissing() {
+        when(ollamaApi.listModels()).thenReturn(models("mistral:latest"));
+        OllamaHealthIndicator indicator = new OllamaHealthIndicator(ollamaApi, "tinyllama", Duration.ofSeconds(30), TIMEOUT);
+
+        assertThat(indicator.health().getStatus()).isEqualTo(Status.DOWN);
+    }
+
+    @Test
+    void shouldProbeOllamaOncePerTtl() {
+        when(ollamaApi.listModels()).thenThrow(new ResourceAccessException("Connection refused"));
+        OllamaHealthIndicator indicator = new OllamaHealthIndicator(ollamaApi, "tinyllama", Duration.ofMinutes(1), TIMEOUT);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(indicator.health().getStatus()).isEqualTo(Status.DOWN);
+        }
+
+        verify(ollamaApi, times(1)).listModels();
+    }
+
+    @Test
+    void shouldProbeAgainOnceTheResultExpired() {
+        when(ollamaApi.listModels()).thenReturn(models("tinyllama:latest"));
+        OllamaHealthIndicator indicator = new OllamaHealthIndicator(ollamaApi, "tinyllama", Duration.ZERO, TIMEOUT);
+
+        indicator.health();
+        indicator.health();
+
+        verify(ollamaApi, times(2)).listModels();
+    }
+
+    @Test
+    void shouldReportDownWhenTheProbeTimesOutWithoutStartingAnother() {
+        CountDownLatch release = new CountDownLatch(1);
+        when(ollamaApi.listModels()).thenAnswer(invocation -> {
+            release.await();
+            return models("tinyllama:latest");
+        });
+        OllamaHealthIndicator indicator = new OllamaHealthIndicator(ollamaApi, "tinyllama", Duration.ofMinutes(1),
+            Duration.ofMillis(50));
+
+        try {
+            Health health = indicator.health();
+            assertThat(health.getStatus()).isEqualTo(Status.DOWN);
+            assertThat(health.getDetails()).containsEntry("error", "Ollama did not answer within 50 ms");
+            assertThat(indicator.health().getStatus()).isEqualTo(Status.DOWN);
+        } finally {
+            release.countDown();
+        }
+
+        verify(ollamaApi, timeout(1000).times(1)).listModels();
+    }
+
+    @Test
+    void shouldMatchModelsWithTheImplicitLatestTag() {
+        assertThat(OllamaHealthIndicator.sameModel("tinyllama:latest", "tinyllama")).isTrue();
+        assertThat(OllamaHealthIndicator.sameModel("llama3.2:3b", "llama3.2:3b")).isTrue();
+        assertThat(OllamaHealthIndicator.sameModel("llama3.2:1b", "llama3.2:3b")).isFalse();
+    }
+
+    private static OllamaApi.ListModelResponse models(String... names) {
+        List<OllamaApi.Model> models = new ArrayList<>();
+        for (String name : names) {
+            models.add(new OllamaApi.Model(name, name, null, null, null, null));
+        }
+        return new OllamaApi.ListModelResponse(models);
+    }
+}
@@ -0,0 +1,65 @@
+package zama.learning.spring.ai.ollama.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WindowedChatMemoryTest {
+
+    @Test
+    void shouldKeepOnlyTheMostRecentMessages() {
+        WindowedChatMemory memory = new WindowedChatMemory(10_000, 4, Duration.ofMinutes(30), 100);
+
+        for (int i = 0; i < 5; i++) {
+            memory.add("c1", List.of(new UserMessage("question " + i), new AssistantMessage("answer " + i)));
+        }
+
+        List<Message> window = memory.get("c1", 100);
+        assertThat(window).extracting(Message::getText)
+                .containsExactly("question 3", "answer 3", "question 4", "answer 4");
+    }
+
+    @Test
+    void shouldDropOldMessagesBeyondTheTokenBudget() {
+        // 40 characters is about 10 tokens, so a budget of 25 holds two messages
+        WindowedChatMemory memory = new WindowedChatMemory(25, 50, Duration.ofMinutes(30), 100);
+        String text = "x".repeat(40);
+
+        memory.add("c1", List.of(new UserMessage(text), new AssistantMessage(text)));
+        memory.add("c1", List.of(new UserMessage(text), new AssistantMessage(text)));
+
+        List<Message> window = memory.get("c1", 100);
+        assertThat(window).hasSize(2);
+        assertThat(window.get(0).getMessageType()).isEqualTo(MessageType.USER);
+    }
+
+    @Test
+    void shouldStartTheWindowAtAUserMessage() {
+        WindowedChatMemory memory = new WindowedChatMemory(10_000, 3, Duration.ofMinutes(30), 100);
+
+        memory.add("c1", List.of(new UserMessage("first"), new AssistantMessage("one")));
+        memory.add("c1", List.of(new UserMessage("second"), new AssistantMessage("two")));
+
+        assertThat(memory.get("c1", 100)).extracting(Message::getText)
+                .containsExactly("second", "two");
+    }
+
+    @Test
+    void shouldKeepConversationsApartAndClearThem() {
+        WindowedChatMemory memory = new WindowedChatMemory(10_000, 50, Duration.ofMinutes(30), 100);
+
+        memory.add("c1", List.of(new UserMessage("hello from one")));
+        memory.add("c2", List.of(new UserMessage("hello from two")));
+        memory.clear("c1");
+
+        assertThat(memory.get("c1", 100)).isEmpty();
+        assertThat(memory.get("c2", 100)).extracting(Message::getText).containsExactly("hello from two");
+    }
+}
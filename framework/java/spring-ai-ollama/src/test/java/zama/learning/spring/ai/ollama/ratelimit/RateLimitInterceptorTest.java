@@ -0,0 +1,47 @@
+package zama.learning.spring.ai.ollama.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitInterceptorTest {
+
+    private final RateLimitInterceptor interceptor = new RateLimitInterceptor(
+            new TokenBucketRateLimiter(60, 1, 100, Duration.ofMinutes(10)), "X-API-Key", Set.of("known-key"));
+
+    @Test
+    void shouldLimitAConfiguredKeyByKey() {
+        assertThat(interceptor.clientOf(request("10.0.0.1", "known-key"))).isEqualTo("key:known-key");
+    }
+
+    @Test
+    void shouldLimitAnUnknownKeyByAddress() {
+        assertThat(interceptor.clientOf(request("10.0.0.1", "made-up-key"))).isEqualTo("ip:10.0.0.1");
+        assertThat(interceptor.clientOf(request("10.0.0.1", null))).isEqualTo("ip:10.0.0.1");
+    }
+
+    @Test
+    void shouldNotGrantAFreshBucketPerMadeUpKey() throws Exception {
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request("10.0.0.1", "made-up-1"), first, null)).isTrue();
+
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        assertThat(interceptor.preHandle(request("10.0.0.1", "made-up-2"), second, null)).isFalse();
+        assertThat(second.getStatus()).isEqualTo(429);
+        assertThat(second.getHeader("Retry-After")).isEqualTo("1");
+    }
+
+    private static MockHttpServletRequest request(String address, String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/chat");
+        request.setRemoteAddr(address);
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        return request;
+    }
+}
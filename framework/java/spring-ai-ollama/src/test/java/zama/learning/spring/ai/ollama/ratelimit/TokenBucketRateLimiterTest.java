@@ -0,0 +1,87 @@
+package zama.learning.spring.ai.ollama.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBucketRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void shouldAllowABurstThenRefuse() {
+        // 60 per minute: one token per second
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 3, 100, Duration.ofMinutes(10), clock::get);
+
+        assertThat(limiter.tryAcquire("a").remaining()).isEqualTo(2);
+        assertThat(limiter.tryAcquire("a").remaining()).isEqualTo(1);
+        assertThat(limiter.tryAcquire("a").remaining()).isEqualTo(0);
+
+        TokenBucketRateLimiter.Decision refused = limiter.tryAcquire("a");
+        assertThat(refused.allowed()).isFalse();
+        assertThat(refused.retryAfterNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(refused.resetNanos()).isEqualTo(TimeUnit.SECONDS.toNanos(3));
+    }
+
+    @Test
+    void shouldRefillOverTime() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 2, 100, Duration.ofMinutes(10), clock::get);
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("a");
+        assertThat(limiter.tryAcquire("a").allowed()).isFalse();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(limiter.tryAcquire("a").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("a").allowed()).isFalse();
+
+        // A long pause refills the bucket, but never beyond the burst
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        assertThat(limiter.tryAcquire("a").remaining()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldKeepClientsApart() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 1, 100, Duration.ofMinutes(10), clock::get);
+
+        assertThat(limiter.tryAcquire("a").allowed()).isTrue();
+        assertThat(limiter.tryAcquire("a").allowed()).isFalse();
+        assertThat(limiter.tryAcquire("b").allowed()).isTrue();
+    }
+
+    @Test
+    void shouldBoundTheNumberOfClients() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 1, 100, Duration.ofMinutes(10), clock::get);
+
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("client-" + i);
+        }
+
+        assertThat(limiter.clientCount()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void shouldNeverAllowMoreThanTheBurstAcrossThreads() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(60, 50, 100, Duration.ofMinutes(10), clock::get);
+        AtomicLong allowed = new AtomicLong();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    if (limiter.tryAcquire("shared").allowed()) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(allowed.get()).isEqualTo(50);
+    }
+}